@@ -0,0 +1,127 @@
+package com.epages.commandline.health.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Java agent evaluating the health endpoint inside the target JVM on its own
+ * schedule. The result of the last evaluation is published as a
+ * {@link HealthSnapshot}, so a check reads a few precomputed attributes
+ * instead of running every health indicator within its remote call.
+ * <p>
+ * Usage: {@code -javaagent:jmx-health-check-agent.jar[=options]}, with
+ * options separated by semicolons:
+ * <ul>
+ * <li>{@code interval=<seconds>}: time between two evaluations, default 10
+ * <li>{@code objectName=<name>}: health endpoint, may be a pattern matching
+ * a single MBean, default Spring Boot's healthEndpoint
+ * <li>{@code operation=<name>}: operation returning the health, default
+ * getData
+ * </ul>
+ * The agent may also be loaded into a running JVM through the Attach API.
+ */
+public final class HealthAgent {
+
+    static final String DEFAULT_OBJECT_NAME = "org.springframework.boot:type=Endpoint,name=healthEndpoint";
+    static final String DEFAULT_OPERATION = "getData";
+    static final long DEFAULT_INTERVAL_MILLIS = 10000;
+
+    private final MBeanServer server;
+    private final ObjectName objectName;
+    private final String operation;
+    private final HealthSnapshot snapshot = new HealthSnapshot();
+
+    HealthAgent(MBeanServer server, ObjectName objectName, String operation) {
+        this.server = server;
+        this.objectName = objectName;
+        this.operation = operation;
+    }
+
+    public static void premain(String agentArgs, Instrumentation instrumentation) throws JMException {
+        start(agentArgs);
+    }
+
+    public static void agentmain(String agentArgs, Instrumentation instrumentation) throws JMException {
+        start(agentArgs);
+    }
+
+    private static void start(String agentArgs) throws JMException {
+        Map<String, String> options = parseOptions(agentArgs);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        HealthAgent agent = new HealthAgent(server,
+                new ObjectName(options.getOrDefault("objectName", DEFAULT_OBJECT_NAME)),
+                options.getOrDefault("operation", DEFAULT_OPERATION));
+        server.registerMBean(agent.snapshot, new ObjectName(HealthSnapshot.OBJECT_NAME));
+        String interval = options.get("interval");
+        long intervalMillis = interval == null ? DEFAULT_INTERVAL_MILLIS
+                : (long) (Double.parseDouble(interval) * 1000);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jmx-health-check-agent");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(agent::refresh, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evaluate the health endpoint and publish the result. An endpoint that
+     * is not registered yet, e.g. while the application starts, is published
+     * as UNKNOWN.
+     */
+    void refresh() {
+        try {
+            snapshot.publish(server.invoke(resolve(), operation, null, null));
+        } catch (InstanceNotFoundException e) {
+            snapshot.publishUnknown("Health endpoint not registered: " + objectName);
+        } catch (JMException | RuntimeException e) {
+            snapshot.publishUnknown(String.valueOf(e.getMessage()));
+        }
+    }
+
+    HealthSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private ObjectName resolve() throws InstanceNotFoundException {
+        if (!objectName.isPattern()) {
+            return objectName;
+        }
+        Set<ObjectName> names = server.queryNames(objectName, null);
+        if (names.size() != 1) {
+            throw new InstanceNotFoundException(
+                    "Pattern " + objectName + " must match a single MBean, matches " + names.size());
+        }
+        return names.iterator().next();
+    }
+
+    /**
+     * @param agentArgs
+     *            Agent arguments, {@code key=value} separated by semicolons;
+     *            may be null.
+     * @return Options by key.
+     */
+    static Map<String, String> parseOptions(String agentArgs) {
+        Map<String, String> options = new HashMap<>();
+        if (agentArgs == null) {
+            return options;
+        }
+        for (String option : agentArgs.split(";")) {
+            int separator = option.indexOf('=');
+            if (separator > 0) {
+                options.put(option.substring(0, separator).trim(), option.substring(separator + 1).trim());
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,155 @@
+package com.epages.commandline.health.agent;
+
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Last health evaluation of the {@link HealthAgent}, as read-only attributes:
+ * <ul>
+ * <li>Status: status name, e.g. UP
+ * <li>StatusCode: 0 for UP, 1 for any other status, 2 if the endpoint could
+ * not be evaluated; the exit codes of the health check
+ * <li>Timestamp: time of the evaluation in milliseconds since the epoch
+ * <li>AgeMillis: milliseconds since the evaluation, by the target's clock
+ * <li>Details: full result, rendered like {@code Map.toString()} without
+ * the enclosing braces
+ * </ul>
+ * An evaluation is published as a whole, so the attributes read by one
+ * getAttributes call always belong to the same evaluation.
+ */
+final class HealthSnapshot implements DynamicMBean {
+
+    static final String OBJECT_NAME = "com.epages.commandline.health:type=HealthSnapshot";
+
+    static final byte STATUS_UP = 0;
+    static final byte STATUS_DOWN = 1;
+    static final byte STATUS_UNKNOWN = 2;
+
+    private static final MBeanInfo INFO = new MBeanInfo(HealthSnapshot.class.getName(),
+            "Last health evaluation of the jmx-health-check agent",
+            new MBeanAttributeInfo[] { attribute("Status", String.class, "Status name"),
+                    attribute("StatusCode", Byte.class, "0 for UP, 1 for any other status, 2 if not evaluated"),
+                    attribute("Timestamp", Long.class, "Time of the evaluation in milliseconds since the epoch"),
+                    attribute("AgeMillis", Long.class, "Milliseconds since the evaluation"),
+                    attribute("Details", String.class, "Full result") },
+            null, null, null);
+
+    private volatile State state = new State("UNKNOWN", STATUS_UNKNOWN, System.currentTimeMillis(),
+            "Health not evaluated yet.");
+
+    /**
+     * Publish the result of the health operation.
+     *
+     * @param value
+     *            Operation result.
+     */
+    void publish(Object value) {
+        Object status = "UP";
+        if (value instanceof Map && ((Map<?, ?>) value).containsKey("status")) {
+            status = ((Map<?, ?>) value).get("status");
+        } else if (value instanceof CompositeData && ((CompositeData) value).containsKey("status")) {
+            status = ((CompositeData) value).get("status");
+        } else if (value == null) {
+            status = "UNKNOWN";
+        }
+        String details = String.valueOf(value);
+        if (value instanceof Map && details.startsWith("{") && details.endsWith("}")) {
+            details = details.substring(1, details.length() - 1);
+        }
+        byte code = "UP".equals(status) ? STATUS_UP : value == null ? STATUS_UNKNOWN : STATUS_DOWN;
+        state = new State(String.valueOf(status), code, System.currentTimeMillis(), details);
+    }
+
+    /**
+     * Publish a failed evaluation.
+     *
+     * @param message
+     *            Reason.
+     */
+    void publishUnknown(String message) {
+        state = new State("UNKNOWN", STATUS_UNKNOWN, System.currentTimeMillis(), message);
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        return state.get(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        State current = state;
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, current.get(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // left out, as specified for getAttributes.
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return INFO;
+    }
+
+    private static MBeanAttributeInfo attribute(String name, Class<?> type, String description) {
+        return new MBeanAttributeInfo(name, type.getName(), description, true, false, false);
+    }
+
+    private static final class State {
+
+        private final String status;
+        private final byte statusCode;
+        private final long timestamp;
+        private final String details;
+
+        private State(String status, byte statusCode, long timestamp, String details) {
+            this.status = status;
+            this.statusCode = statusCode;
+            this.timestamp = timestamp;
+            this.details = details;
+        }
+
+        private Object get(String attribute) throws AttributeNotFoundException {
+            switch (attribute) {
+            case "Status":
+                return status;
+            case "StatusCode":
+                return statusCode;
+            case "Timestamp":
+                return timestamp;
+            case "AgeMillis":
+                return System.currentTimeMillis() - timestamp;
+            case "Details":
+                return details;
+            default:
+                throw new AttributeNotFoundException(attribute);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.epages.commandline.health.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.junit.Test;
+
+public class HealthAgentTest {
+
+    private final MBeanServer server = MBeanServerFactory.newMBeanServer();
+
+    @Test
+    public void should_publish_last_evaluation() throws Exception {
+        Endpoint endpoint = new Endpoint();
+        server.registerMBean(new StandardMBean(endpoint, EndpointMBean.class),
+                new ObjectName(HealthAgent.DEFAULT_OBJECT_NAME));
+        HealthAgent agent = new HealthAgent(server, new ObjectName("org.springframework.boot:type=Endpoint,*"),
+                "health");
+
+        agent.refresh();
+        assertAttributes(agent.getSnapshot(), "UP", HealthSnapshot.STATUS_UP, "status=UP, diskSpace={status=UP}");
+
+        endpoint.data.put("status", "DOWN");
+        agent.refresh();
+        assertAttributes(agent.getSnapshot(), "DOWN", HealthSnapshot.STATUS_DOWN,
+                "status=DOWN, diskSpace={status=UP}");
+    }
+
+    @Test
+    public void should_publish_unknown_until_endpoint_is_registered() throws Exception {
+        HealthAgent agent = new HealthAgent(server, new ObjectName(HealthAgent.DEFAULT_OBJECT_NAME),
+                HealthAgent.DEFAULT_OPERATION);
+
+        agent.refresh();
+
+        assertEquals(HealthSnapshot.STATUS_UNKNOWN, agent.getSnapshot().getAttribute("StatusCode"));
+    }
+
+    @Test
+    public void should_parse_options() {
+        Map<String, String> options = HealthAgent
+                .parseOptions("interval=5;objectName=com.example:type=Health,name=a");
+
+        assertEquals("5", options.get("interval"));
+        assertEquals("com.example:type=Health,name=a", options.get("objectName"));
+        assertTrue(HealthAgent.parseOptions(null).isEmpty());
+    }
+
+    private static void assertAttributes(HealthSnapshot snapshot, String status, byte code, String details) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Attribute attribute : snapshot
+                .getAttributes(new String[] { "Status", "StatusCode", "Details", "AgeMillis" }).asList()) {
+            values.put(attribute.getName(), attribute.getValue());
+        }
+        assertEquals(status, values.get("Status"));
+        assertEquals(code, values.get("StatusCode"));
+        assertEquals(details, values.get("Details"));
+        assertTrue((Long) values.get("AgeMillis") >= 0);
+    }
+
+    public interface EndpointMBean {
+        Map<String, Object> health();
+    }
+
+    private static class Endpoint implements EndpointMBean {
+
+        private final Map<String, Object> data = new LinkedHashMap<>();
+
+        Endpoint() {
+            data.put("status", "UP");
+            data.put("diskSpace", Collections.singletonMap("status", "UP"));
+        }
+
+        @Override
+        public Map<String, Object> health() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.epages.commandline.health;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event with the phase timings of a check. Only loaded through
+ * {@link PhaseTimings} when the runtime provides jdk.jfr, e.g. Java 11 or
+ * 8u262 and later.
+ */
+@Name("com.epages.commandline.health.Check")
+@Label("JMX Health Check")
+@Category("JMX Health Check")
+@StackTrace(false)
+final class JfrCheckEvent extends Event {
+
+    @Label("Target")
+    String target;
+
+    @Label("Status")
+    String status;
+
+    @Label("Lookup")
+    @Timespan(Timespan.NANOSECONDS)
+    long lookup;
+
+    @Label("Connect")
+    @Timespan(Timespan.NANOSECONDS)
+    long connect;
+
+    @Label("Resolve")
+    @Timespan(Timespan.NANOSECONDS)
+    long resolve;
+
+    @Label("Invoke")
+    @Timespan(Timespan.NANOSECONDS)
+    long invoke;
+
+    @Label("Render")
+    @Timespan(Timespan.NANOSECONDS)
+    long render;
+
+    @Label("Total")
+    @Timespan(Timespan.NANOSECONDS)
+    long total;
+
+    /**
+     * @param target
+     *            Checked target.
+     * @param status
+     *            Check status.
+     * @param nanos
+     *            Lookup, connect, resolve, invoke, render and total
+     *            nanoseconds.
+     */
+    static void commit(String target, String status, long[] nanos) {
+        JfrCheckEvent event = new JfrCheckEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.target = target;
+        event.status = status;
+        event.lookup = nanos[0];
+        event.connect = nanos[1];
+        event.resolve = nanos[2];
+        event.invoke = nanos[3];
+        event.render = nanos[4];
+        event.total = nanos[5];
+        event.commit();
+    }
+}
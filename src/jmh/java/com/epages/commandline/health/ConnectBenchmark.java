@@ -0,0 +1,118 @@
+package com.epages.commandline.health;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXServiceURL;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Connect plus invoke latency against a separate local JVM: through the
+ * remote JMX port and RMI registry, and through the local connector address
+ * found with the Attach API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectBenchmark {
+
+    private static final String OBJECT_NAME = "java.lang:type=Runtime";
+
+    private final JmxHealthCheck check = new JmxHealthCheck();
+    private Process target;
+    private String pid;
+    private JMXServiceURL rmiUrl;
+    private JMXServiceURL localUrl;
+
+    @Setup
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        target = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-Dcom.sun.management.jmxremote.port=" + port, "-Dcom.sun.management.jmxremote.authenticate=false",
+                "-Dcom.sun.management.jmxremote.ssl=false", IdleTarget.class.getName()).inheritIO().start();
+        rmiUrl = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + port + "/jmxrmi");
+        pid = findPid();
+        localUrl = LocalAttach.attach(pid);
+        waitForRmi();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        target.destroy();
+        target.waitFor();
+    }
+
+    @Benchmark
+    public Object rmi() throws Exception {
+        return connectAndInvoke(rmiUrl);
+    }
+
+    @Benchmark
+    public Object localConnectorAddress() throws Exception {
+        return connectAndInvoke(localUrl);
+    }
+
+    /**
+     * Includes the attach itself, i.e. the cost of a check without the
+     * daemon's address cache.
+     */
+    @Benchmark
+    public Object attachAndLocalConnectorAddress() throws Exception {
+        return connectAndInvoke(LocalAttach.attach(pid));
+    }
+
+    private Object connectAndInvoke(JMXServiceURL url) throws Exception {
+        try (JMXConnector connector = check.openConnection(url, null, null)) {
+            return connector.getMBeanServerConnection().getAttribute(new ObjectName(OBJECT_NAME),
+                    "Uptime");
+        }
+    }
+
+    private String findPid() throws Exception {
+        String self = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                String pid = LocalAttach.findPid(IdleTarget.class.getName());
+                if (!pid.equals(self)) {
+                    return pid;
+                }
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Target JVM not found");
+    }
+
+    private void waitForRmi() throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (true) {
+            try {
+                connectAndInvoke(rmiUrl);
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+}
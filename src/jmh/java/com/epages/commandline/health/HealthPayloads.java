@@ -0,0 +1,49 @@
+package com.epages.commandline.health;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Spring Boot style health payloads of different sizes.
+ */
+final class HealthPayloads {
+
+    private HealthPayloads() {
+    }
+
+    /**
+     * @param indicators
+     *            Number of health indicators besides the top-level status.
+     * @return Health map as returned by the health endpoint's getData.
+     */
+    static Map<String, Object> create(int indicators) {
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", "UP");
+        for (int i = 0; i < indicators; i++) {
+            switch (i % 4) {
+            case 0:
+                health.put("diskSpace" + i, indicator("total", 190163431424L, "free", 16598224896L, "threshold", 10485760L));
+                break;
+            case 1:
+                health.put("db" + i, indicator("database", "PostgreSQL", "hello", 1));
+                break;
+            case 2:
+                health.put("rabbit" + i, indicator("version", "3.6.5"));
+                break;
+            default:
+                health.put("refreshScope" + i, indicator());
+                break;
+            }
+        }
+        return health;
+    }
+
+    private static Map<String, Object> indicator(Object... details) {
+        Map<String, Object> indicator = new LinkedHashMap<>();
+        indicator.put("status", "UP");
+        for (int i = 0; i < details.length; i += 2) {
+            indicator.put((String) details[i], details[i + 1]);
+        }
+        return indicator;
+    }
+}
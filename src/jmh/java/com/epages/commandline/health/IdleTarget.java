@@ -0,0 +1,11 @@
+package com.epages.commandline.health;
+
+/**
+ * Target JVM for connect benchmarks, idles until killed.
+ */
+public class IdleTarget {
+
+    public static void main(String[] args) throws InterruptedException {
+        Thread.sleep(Long.MAX_VALUE);
+    }
+}
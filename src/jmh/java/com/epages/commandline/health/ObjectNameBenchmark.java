@@ -0,0 +1,60 @@
+package com.epages.commandline.health;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Name resolution and invoke against an in-process MBean server, i.e. the
+ * cost of the check itself without the RMI transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ObjectNameBenchmark {
+
+    @Param({ "org.springframework.boot:type=Endpoint,name=healthEndpoint", "org.springframework.boot:type=Endpoint,*",
+            "*:type=Endpoint,name=healthEndpoint" })
+    private String objectName;
+
+    /**
+     * Number of unrelated MBeans registered next to the health endpoint.
+     */
+    @Param({ "10", "500" })
+    private int otherMBeans;
+
+    private final JmxHealthCheck check = new JmxHealthCheck();
+    private MBeanServer server;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = MBeanServerFactory.newMBeanServer();
+        HealthEndpoint endpoint = new HealthEndpoint("UP");
+        endpoint.setData(HealthPayloads.create(10));
+        server.registerMBean(endpoint, new ObjectName(JmxHealthCheck.DEFAULT_OBJECT_NAME));
+        for (int i = 0; i < otherMBeans; i++) {
+            server.registerMBean(new HealthEndpoint("UP"), new ObjectName("com.example:type=Other,name=other" + i));
+        }
+    }
+
+    @Benchmark
+    public ObjectName getObjectName() throws Exception {
+        return check.getObjectName(server, objectName);
+    }
+
+    @Benchmark
+    public Object invoke() throws Exception {
+        return check.invoke(server, objectName, JmxHealthCheck.DEFAULT_OPERATION);
+    }
+}
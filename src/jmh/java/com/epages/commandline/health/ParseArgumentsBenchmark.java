@@ -0,0 +1,29 @@
+package com.epages.commandline.health;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing of a typical command line into properties, paid once per check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParseArgumentsBenchmark {
+
+    private final String[] args = { "-U", "service:jmx:rmi:///jndi/rmi://localhost:1234/jmxrmi", "-O",
+            "org.springframework.boot:type=Endpoint,name=healthEndpoint", "-o", "getData", "--username",
+            "monitorRole", "--password", "secret" };
+
+    @Benchmark
+    public Properties parseArguments() {
+        return JmxHealthCheck.parseArguments(args);
+    }
+}
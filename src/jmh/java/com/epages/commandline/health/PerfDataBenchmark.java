@@ -0,0 +1,46 @@
+package com.epages.commandline.health;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Performance counter check against the benchmark JVM itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PerfDataBenchmark {
+
+    private final HsperfCheck check = new HsperfCheck();
+    private final Properties args = new Properties();
+    private PerfData data;
+    private int offset;
+
+    @Setup
+    public void setUp() throws Exception {
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        args.put(JmxHealthCheck.PROP_PID, pid);
+        args.put(JmxHealthCheck.PROP_MAX_HEAP, "90");
+        data = PerfData.map(PerfData.find(pid));
+        offset = data.offset("sun.gc.generation.0.space.0.used");
+    }
+
+    @Benchmark
+    public long readCounter() {
+        return data.getLong(offset);
+    }
+
+    @Benchmark
+    public CheckResult heapCheck() throws Exception {
+        return check.check(args);
+    }
+}
@@ -0,0 +1,66 @@
+package com.epages.commandline.health;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Evaluation and rendering of the operation result, the Map and List branches
+ * of execute. Run with the gc profiler (enabled in build.gradle) to compare
+ * the allocation per check, gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RenderBenchmark {
+
+    /**
+     * Number of health indicators: a small service, a typical one and one
+     * with 40+ indicators.
+     */
+    @Param({ "3", "12", "48" })
+    private int indicators;
+
+    private final JmxHealthCheck check = new JmxHealthCheck();
+    private Map<String, Object> health;
+    private List<Object> list;
+
+    @Setup
+    public void setUp() {
+        health = HealthPayloads.create(indicators);
+        list = Arrays.asList(health.values().toArray());
+    }
+
+    @Benchmark
+    public CheckResult renderMap() {
+        return check.evaluate(health);
+    }
+
+    @Benchmark
+    public CheckResult renderList() {
+        return check.evaluate(list);
+    }
+
+    /**
+     * The former rendering with one string per entry and
+     * {@code Collectors.joining}, kept for comparison.
+     */
+    @Benchmark
+    public String renderMapJoining() {
+        return health.entrySet() //
+                .stream() //
+                .map(entry -> entry.getKey() + "=" + entry.getValue()) //
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,126 @@
+package com.epages.commandline.health;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Reads attributes of one or more MBeans. All attributes of an MBean are read
+ * with a single getAttributes call, and the calls for different MBeans run
+ * concurrently over the same connection, so a check costs one round trip per
+ * MBean instead of one per attribute.
+ */
+class AttributeCheck {
+
+    private final JmxHealthCheck check;
+    private final Executor executor;
+
+    /**
+     * @param check
+     *            Health check used for object name resolution.
+     * @param executor
+     *            Executor of the checks, running the reads.
+     */
+    AttributeCheck(JmxHealthCheck check, Executor executor) {
+        this.check = check;
+        this.executor = executor;
+    }
+
+    /**
+     * Read the attributes and render them in the requested order as
+     * {@code objectName/attribute=value}. Attributes the MBean server does
+     * not return make the check CRITICAL.
+     *
+     * @param connection
+     *            MBean server connection.
+     * @param specs
+     *            Attributes as {@code objectName/attribute}.
+     * @return Check result.
+     * @throws Exception
+     *             In case of a communication error or unknown MBean.
+     */
+    public CheckResult check(MBeanServerConnection connection, List<String> specs) throws Exception {
+        Map<String, List<String>> groups = group(specs);
+        List<String> objectNames = new ArrayList<>(groups.keySet());
+        List<Callable<Map<String, Object>>> reads = new ArrayList<>(groups.size());
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            reads.add(() -> read(connection, group.getKey(), group.getValue()));
+        }
+        List<FutureTask<Map<String, Object>>> futures = CheckExecutors.invokeAll(executor, reads);
+        Map<String, Object> values = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String spec : specs) {
+            int separator = spec.lastIndexOf('/');
+            Map<String, Object> mbeanValues = get(futures.get(objectNames.indexOf(spec.substring(0, separator))));
+            String attribute = spec.substring(separator + 1);
+            if (mbeanValues.containsKey(attribute)) {
+                values.put(spec, mbeanValues.get(attribute));
+            } else {
+                missing.add(spec);
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        HealthRenderer.renderTopLevel(values, out);
+        if (!missing.isEmpty()) {
+            out.append(out.length() > 0 ? ", " : "").append("missing=").append(missing);
+        }
+        return new CheckResult(missing.isEmpty() ? Status.OK : Status.CRITICAL, out.toString());
+    }
+
+    private Map<String, Object> read(MBeanServerConnection connection, String objectName, List<String> attributes)
+            throws Exception {
+        ObjectName name = check.getObjectName(connection, objectName);
+        AttributeList list = connection.getAttributes(name, attributes.toArray(new String[attributes.size()]));
+        Map<String, Object> values = new HashMap<>();
+        for (Attribute attribute : list.asList()) {
+            values.put(attribute.getName(), attribute.getValue());
+        }
+        return values;
+    }
+
+    private static Map<String, Object> get(Future<Map<String, Object>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Group attribute specs by object name, keeping the order of first
+     * appearance.
+     *
+     * @param specs
+     *            Attributes as {@code objectName/attribute}.
+     * @return Attribute names per object name.
+     */
+    static Map<String, List<String>> group(List<String> specs) {
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (String spec : specs) {
+            int separator = spec.lastIndexOf('/');
+            if (separator <= 0 || separator == spec.length() - 1) {
+                throw new IllegalArgumentException("Attribute must be given as <object_name>/<attribute>: " + spec);
+            }
+            List<String> attributes = groups.computeIfAbsent(spec.substring(0, separator), key -> new ArrayList<>());
+            String attribute = spec.substring(separator + 1);
+            if (!attributes.contains(attribute)) {
+                attributes.add(attribute);
+            }
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,90 @@
+package com.epages.commandline.health;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent checks of the same target: while a check is in
+ * flight, further requests for the same target wait for it and receive its
+ * result instead of invoking the operation again. With several monitors
+ * polling the same service, the monitored JVM sees one invocation per
+ * burst instead of one per monitor.
+ */
+final class CheckCoalescer {
+
+    private final ConcurrentMap<Target, CompletableFuture<CheckResult>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run a check, or join the one already running for the target.
+     *
+     * @param target
+     *            Target of the check; targets are equal if they have the same
+     *            connection, object name, operation and attributes.
+     * @param check
+     *            Check to run if none is in flight.
+     * @return Check result, possibly shared with concurrent callers.
+     * @throws Exception
+     *             If the check fails; concurrent callers get the same
+     *             exception.
+     */
+    public CheckResult check(Target target, Callable<CheckResult> check) throws Exception {
+        return check(target, Deadline.none(), check);
+    }
+
+    /**
+     * Run a check, or join the one already running for the target for at
+     * most the remaining budget.
+     *
+     * @param target
+     *            Target of the check.
+     * @param deadline
+     *            Time budget of the caller.
+     * @param check
+     *            Check to run if none is in flight.
+     * @return Check result, possibly shared with concurrent callers.
+     * @throws TimeoutException
+     *             If the budget expires while waiting for a running check.
+     * @throws Exception
+     *             If the check fails; concurrent callers get the same
+     *             exception.
+     */
+    public CheckResult check(Target target, Deadline deadline, Callable<CheckResult> check) throws Exception {
+        CompletableFuture<CheckResult> future = new CompletableFuture<>();
+        CompletableFuture<CheckResult> running = inFlight.putIfAbsent(target, future);
+        if (running != null) {
+            return join(running, deadline);
+        }
+        CheckResult result;
+        try {
+            result = check.call();
+        } catch (Exception | Error e) {
+            inFlight.remove(target, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(target, future);
+        future.complete(result);
+        return result;
+    }
+
+    private static CheckResult join(CompletableFuture<CheckResult> future, Deadline deadline) throws Exception {
+        try {
+            return deadline.isBounded() ? future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS)
+                    : future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * @return Number of checks in flight.
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
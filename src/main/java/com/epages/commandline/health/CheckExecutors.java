@@ -0,0 +1,136 @@
+package com.epages.commandline.health;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for running blocking checks.
+ */
+final class CheckExecutors {
+
+    /**
+     * Platform thread pool of a fixed size.
+     */
+    static final String FIXED = "fixed";
+    /**
+     * One virtual thread per check.
+     */
+    static final String VIRTUAL = "virtual";
+
+    /**
+     * Stack size of fallback threads. A check only needs a shallow stack for
+     * the RMI call, the default of 512k-1m per thread is wasted.
+     */
+    private static final long SMALL_STACK_SIZE = 256 * 1024;
+
+    private CheckExecutors() {
+    }
+
+    /**
+     * Create the executor selected by name.
+     *
+     * @param name
+     *            {@link #FIXED} or {@link #VIRTUAL}.
+     * @param parallelism
+     *            Pool size for the fixed executor.
+     * @return Executor.
+     */
+    static ExecutorService create(String name, int parallelism) {
+        if (VIRTUAL.equals(name)) {
+            return virtual();
+        } else if (FIXED.equals(name)) {
+            return fixed(parallelism);
+        }
+        throw new IllegalArgumentException("Unknown executor: " + name);
+    }
+
+    /**
+     * @param parallelism
+     *            Number of threads.
+     * @return Fixed pool of daemon platform threads.
+     */
+    static ExecutorService fixed(int parallelism) {
+        return Executors.newFixedThreadPool(Math.max(parallelism, 1), daemonThreads(0));
+    }
+
+    /**
+     * @return Unbounded pool of daemon platform threads.
+     */
+    static ExecutorService cached() {
+        return Executors.newCachedThreadPool(daemonThreads(0));
+    }
+
+    /**
+     * Executor starting one virtual thread per task. Virtual threads are
+     * looked up reflectively, as the tool is built for Java 8. On a runtime
+     * without virtual threads, this falls back to one small-stack platform
+     * thread per task.
+     *
+     * @return Thread-per-task executor.
+     */
+    static ExecutorService virtual() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads not available on Java " + System.getProperty("java.version")
+                    + ", using platform threads.");
+            return Executors.newCachedThreadPool(daemonThreads(SMALL_STACK_SIZE));
+        }
+    }
+
+    /**
+     * Run tasks concurrently, within the deadline of the calling thread. The
+     * calling thread runs every task the executor has not started yet
+     * itself, so a check running on a bounded pool cannot deadlock by
+     * waiting for its own tasks queued behind it.
+     *
+     * @param executor
+     *            Executor of the checks.
+     * @param tasks
+     *            Tasks to run.
+     * @return Futures of the tasks, in the same order.
+     */
+    static <T> List<FutureTask<T>> invokeAll(Executor executor, List<Callable<T>> tasks) {
+        List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            FutureTask<T> future = new FutureTask<>(Deadline.bind(task));
+            futures.add(future);
+            executor.execute(future);
+        }
+        for (FutureTask<T> future : futures) {
+            // does nothing if a pool thread has already started the task.
+            future.run();
+        }
+        return futures;
+    }
+
+    /**
+     * @return Whether this runtime supports virtual threads.
+     */
+    static boolean isVirtualAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(long stackSize) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(null, runnable, "jmx-health-check-" + count.incrementAndGet(), stackSize);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
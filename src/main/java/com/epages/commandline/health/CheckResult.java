@@ -0,0 +1,53 @@
+package com.epages.commandline.health;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Outcome of a single health check: the status to report and the rendered
+ * output line.
+ */
+final class CheckResult {
+
+    private final Status status;
+    private final String output;
+    private final Object value;
+
+    CheckResult(Status status, String output) {
+        this(status, output, null);
+    }
+
+    /**
+     * @param status
+     *            Status to report.
+     * @param output
+     *            Rendered output line.
+     * @param value
+     *            Operation result the output was rendered from.
+     */
+    CheckResult(Status status, String output, Object value) {
+        this.status = status;
+        this.output = output;
+        this.value = value;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * @return Operation result the output was rendered from, null if the
+     *         check did not invoke an operation.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return status + " " + output;
+    }
+}
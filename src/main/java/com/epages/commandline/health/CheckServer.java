@@ -0,0 +1,218 @@
+package com.epages.commandline.health;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Resident check server, so that a probe costs one local socket round trip
+ * instead of a JVM start. Checks run through a {@link JmxHealthCheckDaemon},
+ * sharing its connection pool and caches.
+ * <p>
+ * Protocol: the client sends the number of arguments on the first line,
+ * followed by the command line arguments, one per line; an argument may be
+ * empty. The server answers with the exit code on the first line and the
+ * check output on the second line, then closes the connection. See the
+ * jmx-health-check-client script.
+ * <p>
+ * The server listens on a Unix domain socket that only its owner may use
+ * (mode 0600); Unix domain sockets need Java 16 or later and are set up
+ * reflectively, as the tool is built for Java 8. The socket is bound in a
+ * directory only the owner may enter and moved into place once restricted.
+ * A loopback TCP port lets every local user run checks, so it must be
+ * allowed explicitly. Clients cannot select a local JVM to attach to, and
+ * the server's credentials only apply to its own service URL.
+ */
+class CheckServer {
+
+    private final JmxHealthCheckDaemon daemon;
+    private final ExecutorService executor = CheckExecutors.cached();
+
+    CheckServer(JmxHealthCheckDaemon daemon) {
+        this.daemon = daemon;
+    }
+
+    /**
+     * Accept and serve requests until the process is stopped.
+     *
+     * @param address
+     *            Unix domain socket path, or loopback port number.
+     * @param allowTcp
+     *            Whether a loopback port may be used.
+     * @throws IOException
+     *             If the server socket cannot be opened.
+     */
+    public void run(String address, boolean allowTcp) throws IOException {
+        run(open(address, allowTcp));
+    }
+
+    void run(ServerSocketChannel channel) throws IOException {
+        try (ServerSocketChannel server = channel) {
+            while (true) {
+                SocketChannel client = server.accept();
+                executor.execute(() -> serve(client));
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            CheckResult result = check(in);
+            Writer out = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            out.write(result.getStatus().getExitCode() + "\n" + result.getOutput() + "\n");
+            out.flush();
+        } catch (IOException e) {
+            // client went away.
+        }
+    }
+
+    /**
+     * Read a request and run its check. A request without arguments checks
+     * the target given by the server's own options.
+     *
+     * @param in
+     *            Request.
+     * @return Check result, UNKNOWN if the request is malformed or selects
+     *         a local JVM.
+     * @throws IOException
+     *             If reading the request fails.
+     */
+    CheckResult check(BufferedReader in) throws IOException {
+        String count = in.readLine();
+        if (count == null || !count.matches("\\d{1,3}")) {
+            return new CheckResult(Status.UNKNOWN, "Malformed request: expected the number of arguments.");
+        }
+        String[] arguments = new String[Integer.parseInt(count)];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = in.readLine();
+            if (arguments[i] == null) {
+                return new CheckResult(Status.UNKNOWN,
+                        "Malformed request: expected " + arguments.length + " arguments, got " + i + ".");
+            }
+        }
+        Properties args;
+        try {
+            args = JmxHealthCheck.parseArguments(arguments);
+        } catch (RuntimeException e) {
+            return new CheckResult(Status.UNKNOWN, "Malformed request: missing option value.");
+        }
+        if (args.getProperty(JmxHealthCheck.PROP_PID) != null
+                || args.getProperty(JmxHealthCheck.PROP_MAIN_CLASS) != null) {
+            return new CheckResult(Status.UNKNOWN, "--pid and --main-class are not accepted from clients.");
+        }
+        return daemon.check(arguments(args, daemon.getDefaults()));
+    }
+
+    /**
+     * Merge the arguments of a request with the server's own options. The
+     * server's credentials are only given to its own target: a request
+     * selecting another service URL must bring its own.
+     *
+     * @param request
+     *            Arguments of the request.
+     * @param defaults
+     *            Options given on the server command line.
+     * @return Arguments of the check.
+     */
+    static Properties arguments(Properties request, Properties defaults) {
+        String serviceUrl = request.getProperty(JmxHealthCheck.PROP_SERVICE_URL);
+        Properties inherited = defaults;
+        if (serviceUrl != null && !serviceUrl.equals(
+                defaults.getProperty(JmxHealthCheck.PROP_SERVICE_URL, JmxHealthCheck.DEFAULT_SERVICE_URL))) {
+            inherited = new Properties();
+            for (String name : defaults.stringPropertyNames()) {
+                inherited.setProperty(name, defaults.getProperty(name));
+            }
+            inherited.remove(JmxHealthCheck.PROP_USERNAME);
+            inherited.remove(JmxHealthCheck.PROP_PASSWORD);
+        }
+        Properties args = new Properties(inherited);
+        args.putAll(request);
+        return args;
+    }
+
+    /**
+     * @param address
+     *            Unix domain socket path, or loopback port number.
+     * @param allowTcp
+     *            Whether a loopback port may be used.
+     * @return Bound server channel.
+     * @throws IOException
+     *             If the channel cannot be bound.
+     * @throws IllegalArgumentException
+     *             If the address is a port and TCP is not allowed.
+     */
+    static ServerSocketChannel open(String address, boolean allowTcp) throws IOException {
+        if (address.matches("\\d+")) {
+            if (!allowTcp) {
+                throw new IllegalArgumentException("A loopback port lets every local user run checks, "
+                        + "use a Unix domain socket path or allow it with --allow-tcp.");
+            }
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+            return server;
+        }
+        Path path = Paths.get(address).toAbsolutePath();
+        // a stale socket of an earlier run.
+        Files.deleteIfExists(path);
+        // bound in a directory only the owner can enter and moved into place
+        // once restricted, so no other user can connect in between.
+        Path directory;
+        try {
+            directory = Files.createTempDirectory(path.getParent(), ".jmx-health-check",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("Cannot restrict access to socket " + path, e);
+        }
+        Path bound = directory.resolve("socket");
+        try {
+            ServerSocketChannel server;
+            SocketAddress socketAddress;
+            try {
+                ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+                socketAddress = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                        .getMethod("of", Path.class).invoke(null, bound);
+                server = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                        .invoke(null, unix);
+            } catch (IllegalArgumentException | ReflectiveOperationException e) {
+                throw new IOException(
+                        "Unix domain sockets need Java 16 or later, use a port number with --allow-tcp instead.", e);
+            }
+            try {
+                server.bind(socketAddress);
+                Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+                Files.move(bound, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | UnsupportedOperationException e) {
+                server.close();
+                throw new IOException("Cannot restrict access to socket " + path, e);
+            }
+            path.toFile().deleteOnExit();
+            return server;
+        } finally {
+            Files.deleteIfExists(bound);
+            Files.delete(directory);
+        }
+    }
+}
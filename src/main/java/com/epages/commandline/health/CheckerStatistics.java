@@ -0,0 +1,214 @@
+package com.epages.commandline.health;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide statistics of the checker, exposed as a platform MXBean by
+ * the daemon, server and exporter modes. Checks are counted by
+ * {@link Deadline}, phase latencies by {@link PhaseTimings} and connection
+ * reuse by {@link JmxConnectionPool}.
+ * <p>
+ * All counters are {@link LongAdder}s and latencies go into a
+ * {@link Log2Histogram} per phase, so recording never blocks concurrent
+ * checks. The rate is kept in one counter per second of the last minute.
+ */
+final class CheckerStatistics implements CheckerStatisticsMXBean {
+
+    static final String OBJECT_NAME = "com.epages.commandline.health:type=CheckerStatistics";
+
+    private static final int RATE_WINDOW_SECONDS = 60;
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+    private static final String TOTAL = "total";
+    /**
+     * Stamp of a slot not used yet; nanoTime, and so a second, may be
+     * negative.
+     */
+    private static final long UNUSED = Long.MIN_VALUE;
+
+    private static final CheckerStatistics INSTANCE = new CheckerStatistics();
+    private static boolean registered;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder poolHits = new LongAdder();
+    private final LongAdder poolMisses = new LongAdder();
+    private final LongAdder poolSize = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final Log2Histogram[] latencies = new Log2Histogram[PhaseTimings.PHASES.length + 1];
+    private final AtomicLongArray perSecond = new AtomicLongArray(RATE_WINDOW_SECONDS);
+    private final AtomicLongArray seconds = new AtomicLongArray(RATE_WINDOW_SECONDS);
+    private final LongSupplier clock;
+
+    CheckerStatistics() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param clock
+     *            Time source in nanoseconds for the rate.
+     */
+    CheckerStatistics(LongSupplier clock) {
+        this.clock = clock;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Log2Histogram();
+        }
+        for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+            seconds.set(i, UNUSED);
+        }
+    }
+
+    /**
+     * @return Statistics of this process.
+     */
+    static CheckerStatistics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register the statistics with the platform MBean server, once.
+     */
+    static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by another class loader, e.g. in tests.
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+        registered = true;
+    }
+
+    void checkStarted() {
+        inFlight.increment();
+    }
+
+    void checkEnded() {
+        inFlight.decrement();
+    }
+
+    void timedOut() {
+        timeouts.increment();
+    }
+
+    void poolHit() {
+        poolHits.increment();
+    }
+
+    void poolMiss() {
+        poolMisses.increment();
+    }
+
+    void connectionAdded() {
+        poolSize.increment();
+    }
+
+    /**
+     * @param failed
+     *            Whether the connection was discarded after an error or
+     *            timeout, rather than closed on shutdown.
+     */
+    void connectionRemoved(boolean failed) {
+        poolSize.decrement();
+        if (failed) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Record a finished check.
+     *
+     * @param nanos
+     *            Nanoseconds per phase, in the order of
+     *            {@link PhaseTimings#PHASES}, followed by the total.
+     */
+    void record(long[] nanos) {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i].record(nanos[i]);
+        }
+        checks.increment();
+        long second = second();
+        int slot = (int) Math.floorMod(second, (long) RATE_WINDOW_SECONDS);
+        long stamp = seconds.get(slot);
+        if (stamp != second && seconds.compareAndSet(slot, stamp, second)) {
+            // a check of the same second may be lost here; the rate is an
+            // estimate anyway.
+            perSecond.set(slot, 0);
+        }
+        perSecond.incrementAndGet(slot);
+    }
+
+    @Override
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    @Override
+    public double getChecksPerSecond() {
+        long now = second();
+        long count = 0;
+        for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+            long stamp = seconds.get(i);
+            if (stamp != UNUSED && now - stamp < RATE_WINDOW_SECONDS) {
+                count += perSecond.get(i);
+            }
+        }
+        return (double) count / RATE_WINDOW_SECONDS;
+    }
+
+    private long second() {
+        return Math.floorDiv(clock.getAsLong(), TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public long getPoolSize() {
+        return poolSize.sum();
+    }
+
+    @Override
+    public double getPoolHitRate() {
+        long hits = poolHits.sum();
+        long borrows = hits + poolMisses.sum();
+        return borrows == 0 ? 0 : (double) hits / borrows;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public Map<String, Double> getLatencyMillis() {
+        Map<String, Double> latency = new LinkedHashMap<>();
+        for (int i = 0; i < latencies.length; i++) {
+            String phase = i < PhaseTimings.PHASES.length ? PhaseTimings.PHASES[i] : TOTAL;
+            for (double quantile : QUANTILES) {
+                latency.put(phase + ".p" + Math.round(quantile * 100), latencies[i].percentile(quantile) / 1e6);
+            }
+        }
+        return latency;
+    }
+}
@@ -0,0 +1,54 @@
+package com.epages.commandline.health;
+
+import java.util.Map;
+
+/**
+ * Throughput and latency of the checker itself, registered as
+ * {@value CheckerStatistics#OBJECT_NAME} in long-running modes.
+ */
+public interface CheckerStatisticsMXBean {
+
+    /**
+     * @return Completed checks since start.
+     */
+    long getChecks();
+
+    /**
+     * @return Completed checks per second, averaged over the last minute.
+     */
+    double getChecksPerSecond();
+
+    /**
+     * @return Checks currently running.
+     */
+    long getInFlight();
+
+    /**
+     * @return Open pooled connections.
+     */
+    long getPoolSize();
+
+    /**
+     * @return Share of connection borrows served by an open pooled
+     *         connection, between 0 and 1.
+     */
+    double getPoolHitRate();
+
+    /**
+     * @return Pooled connections discarded after a communication error or
+     *         timeout; connections closed when idle are not counted.
+     */
+    long getEvictions();
+
+    /**
+     * @return Checks that ran out of time.
+     */
+    long getTimeouts();
+
+    /**
+     * @return Latency in milliseconds by phase and percentile, e.g.
+     *         {@code invoke.p99}; the phases are lookup, connect, resolve,
+     *         invoke, render and total.
+     */
+    Map<String, Double> getLatencyMillis();
+}
@@ -0,0 +1,264 @@
+package com.epages.commandline.health;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Time budget of a single check, shared by its phases: registry lookup,
+ * connect, name resolution and invoke. Each phase gets what the previous phases left over.
+ * The check runs on the calling thread; its socket reads are bounded by the
+ * remaining budget through {@link TimeoutSocketFactory}, and when the budget
+ * expires, every resource registered with the deadline is closed by a timer.
+ * The time spent in each phase is recorded in {@link PhaseTimings}.
+ */
+final class Deadline {
+
+    static final String PHASE_LOOKUP = "lookup";
+    static final String PHASE_CONNECT = "connect";
+    static final String PHASE_RESOLVE = "resolve";
+    static final String PHASE_INVOKE = "invoke";
+    static final String PHASE_RENDER = "render";
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jmx-health-check-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long timeoutMillis;
+    private final long expiresAt;
+    private final List<Closeable> resources = new CopyOnWriteArrayList<>();
+    private volatile String phase = PHASE_CONNECT;
+    private volatile boolean aborted;
+    private final PhaseTimings timings = new PhaseTimings();
+
+    private Deadline(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * @return Deadline that never expires.
+     */
+    static Deadline none() {
+        return new Deadline(0);
+    }
+
+    /**
+     * @param timeoutMillis
+     *            Budget in milliseconds, 0 for none.
+     * @return Deadline starting now.
+     */
+    static Deadline after(long timeoutMillis) {
+        return new Deadline(timeoutMillis);
+    }
+
+    /**
+     * @param args
+     *            Arguments as properties.
+     * @return Budget in milliseconds from the timeout option in seconds, 0 if
+     *         not set.
+     */
+    static long timeoutMillis(Properties args) {
+        String timeout = args.getProperty(JmxHealthCheck.PROP_TIMEOUT);
+        return timeout == null ? 0 : (long) (Double.parseDouble(timeout) * 1000);
+    }
+
+    /**
+     * @param defaultMillis
+     *            Timeout if the current thread runs no bounded check.
+     * @return Socket timeout for the current thread: what is left of the
+     *         budget of the check it runs.
+     */
+    static int currentTimeoutMillis(int defaultMillis) {
+        Deadline deadline = CURRENT.get();
+        return deadline == null || !deadline.isBounded() ? defaultMillis : deadline.remainingMillis();
+    }
+
+    public boolean isBounded() {
+        return timeoutMillis > 0;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return Milliseconds left, at least 1; {@link Integer#MAX_VALUE} if
+     *         unbounded.
+     */
+    public int remainingMillis() {
+        if (!isBounded()) {
+            return Integer.MAX_VALUE;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime());
+        return (int) Math.max(1, Math.min(remaining, Integer.MAX_VALUE));
+    }
+
+    public boolean isExpired() {
+        return isBounded() && System.nanoTime() - expiresAt >= 0;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public PhaseTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Start the next phase of the check.
+     *
+     * @param phase
+     *            Phase name.
+     * @throws TimeoutException
+     *             If the budget is already used up.
+     */
+    public void enter(String phase) throws TimeoutException {
+        this.phase = phase;
+        timings.enter(phase);
+        if (isExpired()) {
+            throw new TimeoutException(message());
+        }
+    }
+
+    /**
+     * Register a resource to close when the budget expires. A resource
+     * registered after the budget expired is closed right away.
+     *
+     * @param resource
+     *            Resource.
+     */
+    public void register(Closeable resource) {
+        resources.add(resource);
+        if (aborted) {
+            close(resource);
+        }
+    }
+
+    /**
+     * Run a check within the budget, on the calling thread. If the budget
+     * expires first, the registered resources are closed, which makes the
+     * check fail, and the check is reported as CRITICAL.
+     *
+     * @param check
+     *            Check to run.
+     * @return Check result.
+     * @throws Exception
+     *             If the check fails within the budget.
+     */
+    public CheckResult run(Callable<CheckResult> check) throws Exception {
+        CheckerStatistics statistics = CheckerStatistics.get();
+        statistics.checkStarted();
+        try {
+            CheckResult result = call(check);
+            return aborted ? timeout() : result;
+        } catch (TimeoutException e) {
+            return timeout();
+        } catch (Exception e) {
+            if (aborted || isExpired()) {
+                return timeout();
+            }
+            throw e;
+        } finally {
+            statistics.checkEnded();
+        }
+    }
+
+    /**
+     * Run a task within the budget, on the calling thread. If the budget
+     * expires first, the registered resources are closed, which makes the
+     * task fail.
+     *
+     * @param task
+     *            Task to run.
+     * @return Result of the task.
+     * @throws Exception
+     *             If the task fails.
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        if (!isBounded()) {
+            return task.call();
+        }
+        Deadline outer = CURRENT.get();
+        CURRENT.set(this);
+        ScheduledFuture<?> abort = TIMER.schedule(this::abort, remainingMillis(), TimeUnit.MILLISECONDS);
+        try {
+            return task.call();
+        } finally {
+            abort.cancel(false);
+            restore(outer);
+        }
+    }
+
+    /**
+     * Bind a task to the deadline of the calling thread, so that its socket
+     * reads are bounded by the same budget on whichever thread runs it.
+     *
+     * @param task
+     *            Task to bind.
+     * @return Bound task; the task itself if the calling thread runs no
+     *         bounded check.
+     */
+    static <T> Callable<T> bind(Callable<T> task) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            Deadline outer = CURRENT.get();
+            CURRENT.set(deadline);
+            try {
+                return task.call();
+            } finally {
+                restore(outer);
+            }
+        };
+    }
+
+    private static void restore(Deadline outer) {
+        if (outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(outer);
+        }
+    }
+
+    private void abort() {
+        aborted = true;
+        for (Closeable resource : resources) {
+            close(resource);
+        }
+    }
+
+    private static void close(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException | RuntimeException e) {
+            // releasing as much as possible.
+        }
+    }
+
+    private CheckResult timeout() {
+        CheckerStatistics.get().timedOut();
+        return new CheckResult(Status.CRITICAL, message());
+    }
+
+    private String message() {
+        return "Timeout after " + timeoutMillis + " ms during " + phase + ".";
+    }
+}
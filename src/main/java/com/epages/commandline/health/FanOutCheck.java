@@ -0,0 +1,131 @@
+package com.epages.commandline.health;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Checks every MBean matching an object name pattern. The pattern is
+ * resolved with a single queryNames call and the operation is invoked on all
+ * matches concurrently over the same connection. The overall status follows
+ * an aggregation rule:
+ * <ul>
+ * <li>{@code all}: every MBean must be OK,</li>
+ * <li>{@code any}: at least one MBean must be OK,</li>
+ * <li>{@code quorum}: a majority of the MBeans must be OK,</li>
+ * <li>{@code quorum:<n>}: at least n MBeans must be OK.</li>
+ * </ul>
+ */
+class FanOutCheck {
+
+    static final String ALL = "all";
+    static final String ANY = "any";
+    static final String QUORUM = "quorum";
+
+    private final JmxHealthCheck check;
+    private final Executor executor;
+
+    /**
+     * @param check
+     *            Health check used to invoke and evaluate.
+     * @param executor
+     *            Executor of the checks, running the invocations.
+     */
+    FanOutCheck(JmxHealthCheck check, Executor executor) {
+        this.check = check;
+        this.executor = executor;
+    }
+
+    /**
+     * Invoke the operation on every matching MBean and aggregate the results.
+     * The output lists the number of OK results, followed by each MBean's
+     * output in object name order.
+     *
+     * @param connection
+     *            MBean server connection.
+     * @param objectName
+     *            Object name pattern.
+     * @param operation
+     *            Operation to invoke.
+     * @param aggregate
+     *            Aggregation rule.
+     * @return Check result.
+     * @throws Exception
+     *             In case of a communication error or if no MBean matches.
+     */
+    public CheckResult check(MBeanServerConnection connection, String objectName, String operation, String aggregate)
+            throws Exception {
+        Set<ObjectName> matches = connection.queryNames(new ObjectName(objectName), null);
+        List<ObjectName> names = new ArrayList<>(new TreeSet<>(matches));
+        if (names.isEmpty()) {
+            throw new InstanceNotFoundException("No MBean matches " + objectName);
+        }
+        int required = required(aggregate, names.size());
+        List<Callable<CheckResult>> invocations = new ArrayList<>(names.size());
+        for (ObjectName name : names) {
+            invocations.add(() -> check.check(connection, name, operation));
+        }
+        List<FutureTask<CheckResult>> futures = CheckExecutors.invokeAll(executor, invocations);
+        List<CheckResult> results = new ArrayList<>(names.size());
+        int ok = 0;
+        for (Future<CheckResult> future : futures) {
+            CheckResult result = result(future);
+            results.add(result);
+            if (result.getStatus() == Status.OK) {
+                ok++;
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        out.append(ok).append('/').append(names.size()).append(" OK, ").append(required).append(" required");
+        for (int i = 0; i < names.size(); i++) {
+            out.append("; ").append(names.get(i)).append(": ").append(results.get(i).getStatus()).append(' ')
+                    .append(results.get(i).getOutput());
+        }
+        return new CheckResult(ok >= required ? Status.OK : Status.CRITICAL, out.toString());
+    }
+
+    private static CheckResult result(Future<CheckResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return new CheckResult(Status.CRITICAL, String.valueOf(e.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * @param aggregate
+     *            Aggregation rule.
+     * @param matches
+     *            Number of matching MBeans.
+     * @return Number of MBeans that must be OK.
+     * @throws IllegalArgumentException
+     *             If the rule is unknown.
+     */
+    static int required(String aggregate, int matches) {
+        if (ALL.equals(aggregate)) {
+            return matches;
+        }
+        if (ANY.equals(aggregate)) {
+            return 1;
+        }
+        if (QUORUM.equals(aggregate)) {
+            return matches / 2 + 1;
+        }
+        if (aggregate.startsWith(QUORUM + ":")) {
+            return Integer.parseInt(aggregate.substring(QUORUM.length() + 1));
+        }
+        throw new IllegalArgumentException("Aggregation must be all, any, quorum or quorum:<n>: " + aggregate);
+    }
+}
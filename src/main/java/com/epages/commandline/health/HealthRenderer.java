@@ -0,0 +1,206 @@
+package com.epages.commandline.health;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+/**
+ * Renders operation results into a reusable buffer. Nested maps, collections,
+ * arrays and open MBean data are walked recursively and written straight into
+ * the buffer, without building intermediate strings for each entry. The
+ * format matches {@code Map.toString()} and {@code Collection.toString()}:
+ * {@code key=value, other={status=UP}, list=[a, b]}.
+ */
+final class HealthRenderer {
+
+    /**
+     * Buffers growing beyond this size are not kept for reuse.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    private HealthRenderer() {
+    }
+
+    /**
+     * Render a value. Top-level maps and collections are rendered without
+     * enclosing braces or brackets.
+     *
+     * @param value
+     *            Operation result.
+     * @return Rendered value.
+     */
+    static String render(Object value) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        renderTopLevel(value, buffer);
+        String rendered = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return rendered;
+    }
+
+    /**
+     * Render a value without enclosing braces or brackets.
+     *
+     * @param value
+     *            Value.
+     * @param out
+     *            Buffer to append to.
+     */
+    static void renderTopLevel(Object value, StringBuilder out) {
+        if (value instanceof Map) {
+            renderEntries((Map<?, ?>) value, out);
+        } else if (value instanceof CompositeData) {
+            renderEntries((CompositeData) value, out);
+        } else if (value instanceof Collection) {
+            renderElements(((Collection<?>) value).iterator(), out);
+        } else if (value instanceof TabularData) {
+            renderElements(((TabularData) value).values().iterator(), out);
+        } else if (value instanceof Object[]) {
+            renderElements((Object[]) value, out);
+        } else {
+            renderValue(value, out);
+        }
+    }
+
+    /**
+     * Render a nested value.
+     *
+     * @param value
+     *            Value.
+     * @param out
+     *            Buffer to append to.
+     */
+    static void renderValue(Object value, StringBuilder out) {
+        if (value instanceof String) {
+            out.append((String) value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            out.append(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            out.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Map) {
+            out.append('{');
+            renderEntries((Map<?, ?>) value, out);
+            out.append('}');
+        } else if (value instanceof CompositeData) {
+            out.append('{');
+            renderEntries((CompositeData) value, out);
+            out.append('}');
+        } else if (value instanceof Collection) {
+            out.append('[');
+            renderElements(((Collection<?>) value).iterator(), out);
+            out.append(']');
+        } else if (value instanceof TabularData) {
+            out.append('[');
+            renderElements(((TabularData) value).values().iterator(), out);
+            out.append(']');
+        } else if (value instanceof Object[]) {
+            out.append('[');
+            renderElements((Object[]) value, out);
+            out.append(']');
+        } else {
+            out.append(value);
+        }
+    }
+
+    /**
+     * Flatten nested maps and composite data into one map from the dotted
+     * key path to the leaf value, e.g. {@code diskSpace.free}. Leaves that
+     * are collections, arrays or tabular data are rendered as strings; a
+     * value that is not a map is returned under the empty key.
+     *
+     * @param value
+     *            Operation result.
+     * @return Leaf values by key path, in rendering order.
+     */
+    static Map<String, Object> flatten(Object value) {
+        Map<String, Object> leaves = new LinkedHashMap<>();
+        if (value instanceof Map || value instanceof CompositeData) {
+            flatten(null, value, leaves);
+        } else {
+            leaves.put("", leaf(value));
+        }
+        return leaves;
+    }
+
+    private static void flatten(String path, Object value, Map<String, Object> leaves) {
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                flatten(path(path, String.valueOf(entry.getKey())), entry.getValue(), leaves);
+            }
+        } else if (value instanceof CompositeData) {
+            CompositeData data = (CompositeData) value;
+            for (String key : data.getCompositeType().keySet()) {
+                flatten(path(path, key), data.get(key), leaves);
+            }
+        } else {
+            leaves.put(path, leaf(value));
+        }
+    }
+
+    private static String path(String path, String key) {
+        return path == null ? key : path + "." + key;
+    }
+
+    private static Object leaf(Object value) {
+        if (value instanceof Collection || value instanceof TabularData || value instanceof Object[]) {
+            StringBuilder out = new StringBuilder();
+            renderValue(value, out);
+            return out.toString();
+        }
+        return value;
+    }
+
+    private static void renderEntries(Map<?, ?> map, StringBuilder out) {
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                out.append(", ");
+            }
+            first = false;
+            renderValue(entry.getKey(), out);
+            out.append('=');
+            renderValue(entry.getValue(), out);
+        }
+    }
+
+    private static void renderEntries(CompositeData data, StringBuilder out) {
+        boolean first = true;
+        for (String key : data.getCompositeType().keySet()) {
+            if (!first) {
+                out.append(", ");
+            }
+            first = false;
+            out.append(key).append('=');
+            renderValue(data.get(key), out);
+        }
+    }
+
+    private static void renderElements(Iterator<?> elements, StringBuilder out) {
+        boolean first = true;
+        while (elements.hasNext()) {
+            if (!first) {
+                out.append(", ");
+            }
+            first = false;
+            renderValue(elements.next(), out);
+        }
+    }
+
+    private static void renderElements(Object[] elements, StringBuilder out) {
+        for (int i = 0; i < elements.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            renderValue(elements[i], out);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.epages.commandline.health;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.AttributeChangeNotification;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.RuntimeOperationsException;
+import javax.management.openmbean.CompositeData;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+
+/**
+ * Push-based health state. On the first check of a target, the operation is
+ * invoked once and a notification listener is added to the MBean; afterwards
+ * the state is updated from the notifications and checks are answered
+ * locally, without a round trip. The operation is only invoked again as a
+ * heartbeat, when no notification arrived within the heartbeat interval, or
+ * after a notification that does not carry health data.
+ * <p>
+ * A notification carries health data if it is an
+ * {@link AttributeChangeNotification} whose new value, or any notification
+ * whose user data, is a map or composite data. Targets whose MBean does not
+ * emit notifications are invoked on every check. A subscription ends when
+ * its connection fails or is closed.
+ */
+class HealthSubscriptions {
+
+    /**
+     * Heartbeat interval if none is given.
+     */
+    static final long DEFAULT_HEARTBEAT_MILLIS = 60000;
+
+    private final JmxHealthCheck check;
+    private final JmxConnectionPool pool;
+    private final ObjectNameCache names;
+    private final ConcurrentMap<Target, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * @param check
+     *            Health check used to invoke and evaluate.
+     * @param pool
+     *            Pool providing the connections.
+     * @param names
+     *            Cache resolving object name patterns.
+     */
+    HealthSubscriptions(JmxHealthCheck check, JmxConnectionPool pool, ObjectNameCache names) {
+        this.check = check;
+        this.pool = pool;
+        this.names = names;
+    }
+
+    /**
+     * Answer from the subscribed state if it is recent enough, otherwise
+     * invoke the operation and subscribe if not yet subscribed.
+     *
+     * @param target
+     *            Target to check.
+     * @param heartbeatMillis
+     *            Maximum age of the state.
+     * @param deadline
+     *            Time budget for an invocation.
+     * @return Check result.
+     * @throws Exception
+     *             In case of a communication or MBean error.
+     */
+    public CheckResult check(Target target, long heartbeatMillis, Deadline deadline) throws Exception {
+        Subscription subscription = subscriptions.get(target);
+        CheckResult fresh = subscription == null ? null : subscription.freshResult(heartbeatMillis);
+        if (fresh != null) {
+            return fresh;
+        }
+        return deadline.run(() -> pool.executeOnConnector(target.getConnectionKey(), deadline, connector -> {
+            MBeanServerConnection connection = connector.getMBeanServerConnection();
+            deadline.enter(Deadline.PHASE_RESOLVE);
+            ObjectName objectName = names.resolve(target.getConnectionKey(), connection, target.getObjectName());
+            deadline.enter(Deadline.PHASE_INVOKE);
+            CheckResult result = check.check(connection, objectName, target.getOperation());
+            Subscription current = subscriptions.computeIfAbsent(target, Subscription::new);
+            if (current.subscribing.compareAndSet(false, true)) {
+                subscribe(current, connector, objectName);
+            }
+            current.update(result);
+            return result;
+        }));
+    }
+
+    /**
+     * Add the listeners of a new subscription, both on the connector the
+     * check ran on; only called once per subscription, by the check that
+     * created it. The connection listener goes first, so a failure of the
+     * connector cannot go unnoticed once notifications are subscribed.
+     */
+    private void subscribe(Subscription subscription, JMXConnector connector, ObjectName objectName)
+            throws Exception {
+        connector.addConnectionNotificationListener(subscription.connectionListener, null, null);
+        try {
+            connector.getMBeanServerConnection().addNotificationListener(objectName, subscription::onNotification,
+                    null, null);
+        } catch (IllegalArgumentException | RuntimeOperationsException e) {
+            // the MBean does not emit notifications, invoke on every check.
+            removeConnectionListener(subscription, connector);
+            return;
+        } catch (Exception e) {
+            removeConnectionListener(subscription, connector);
+            subscriptions.remove(subscription.target, subscription);
+            throw e;
+        }
+        subscription.active = true;
+    }
+
+    private static void removeConnectionListener(Subscription subscription, JMXConnector connector) {
+        try {
+            connector.removeConnectionNotificationListener(subscription.connectionListener);
+        } catch (ListenerNotFoundException e) {
+            // never added.
+        }
+    }
+
+    /**
+     * @param args
+     *            Arguments as properties.
+     * @return Heartbeat interval in milliseconds from the option in seconds.
+     */
+    static long heartbeatMillis(Properties args) {
+        String heartbeat = args.getProperty(JmxHealthCheck.PROP_HEARTBEAT);
+        return heartbeat == null ? DEFAULT_HEARTBEAT_MILLIS : (long) (Double.parseDouble(heartbeat) * 1000);
+    }
+
+    /**
+     * @return Number of subscribed targets, including targets whose MBean
+     *         does not emit notifications.
+     */
+    public int size() {
+        return subscriptions.size();
+    }
+
+    private final class Subscription {
+
+        private final Target target;
+        private final AtomicBoolean subscribing = new AtomicBoolean();
+        private final NotificationListener connectionListener = this::onConnectionNotification;
+        private volatile boolean active;
+        private volatile CheckResult result;
+        private volatile long updated;
+
+        private Subscription(Target target) {
+            this.target = target;
+        }
+
+        /**
+         * @return Result from notifications or the last invocation, null if
+         *         older than the heartbeat interval or not subscribed.
+         */
+        private CheckResult freshResult(long heartbeatMillis) {
+            CheckResult current = result;
+            boolean fresh = System.nanoTime() - updated < TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+            return active && fresh ? current : null;
+        }
+
+        private void update(CheckResult result) {
+            this.result = result;
+            this.updated = System.nanoTime();
+        }
+
+        private void onNotification(Notification notification, Object handback) {
+            Object data = notification instanceof AttributeChangeNotification
+                    ? ((AttributeChangeNotification) notification).getNewValue()
+                    : notification.getUserData();
+            if (data instanceof Map || data instanceof CompositeData) {
+                update(check.evaluate(data));
+            } else {
+                // no health data, invoke on the next check.
+                result = null;
+            }
+        }
+
+        private void onConnectionNotification(Notification notification, Object handback) {
+            String type = notification.getType();
+            if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)
+                    || JMXConnectionNotification.NOTIFS_LOST.equals(type)) {
+                active = false;
+                subscriptions.remove(target, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.epages.commandline.health;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * JVM liveness, heap, GC and safepoint check based on the memory-mapped
+ * performance counters of a local JVM (see {@link PerfData}), without any
+ * JMX round trip. GC and safepoint time are measured as the share of the
+ * time since the previous check of the same JVM spent in them; only the
+ * first check of a JVM waits a sample interval for a baseline.
+ */
+class HsperfCheck {
+
+    static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 1000;
+
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> pids = new ConcurrentHashMap<>();
+
+    /**
+     * Check the JVM selected by process id or main class.
+     *
+     * @param args
+     *            Arguments as properties.
+     * @return Check result, CRITICAL if the JVM is gone or a threshold is
+     *         exceeded.
+     * @throws IOException
+     *             If the performance data cannot be read.
+     * @throws InterruptedException
+     *             If interrupted while sampling.
+     */
+    public CheckResult check(Properties args) throws IOException, InterruptedException {
+        String pid = args.getProperty(JmxHealthCheck.PROP_PID);
+        if (pid == null) {
+            pid = findPid(args.getProperty(JmxHealthCheck.PROP_MAIN_CLASS));
+        }
+        Counters jvm = counters(pid);
+        if (jvm == null) {
+            return new CheckResult(Status.CRITICAL, "No JVM performance data for process " + pid + ".");
+        }
+        double maxHeap = percent(args, JmxHealthCheck.PROP_MAX_HEAP);
+        double maxGcTime = percent(args, JmxHealthCheck.PROP_MAX_GC_TIME);
+        double maxSafepointTime = percent(args, JmxHealthCheck.PROP_MAX_SAFEPOINT_TIME);
+        String interval = args.getProperty(JmxHealthCheck.PROP_SAMPLE_INTERVAL);
+
+        List<String> exceeded = new ArrayList<>();
+        StringBuilder out = new StringBuilder();
+        long heapUsed = jvm.heapUsed();
+        long heapMax = jvm.heapMax();
+        out.append("heapUsed=").append(heapUsed).append(", heapMax=").append(heapMax);
+        if (heapMax > 0) {
+            double heapPercent = heapUsed * 100.0 / heapMax;
+            appendPercent(out, "heapUsedPercent", heapPercent, maxHeap, exceeded);
+        }
+
+        if (interval != null || maxGcTime >= 0 || maxSafepointTime >= 0) {
+            Sample previous = jvm.previous;
+            if (previous == null) {
+                previous = jvm.sample();
+                Thread.sleep(interval == null ? DEFAULT_SAMPLE_INTERVAL_MILLIS : Long.parseLong(interval));
+                if (!jvm.isAlive()) {
+                    counters.remove(pid, jvm);
+                    return new CheckResult(Status.CRITICAL, "Process " + pid + " terminated.");
+                }
+            }
+            Sample current = jvm.sample();
+            jvm.previous = current;
+            double elapsedTicks = (current.nanos - previous.nanos)
+                    * (jvm.frequency() / (double) TimeUnit.SECONDS.toNanos(1));
+            appendPercent(out, "gcTimePercent", share(current.gcTicks - previous.gcTicks, elapsedTicks), maxGcTime,
+                    exceeded);
+            appendPercent(out, "safepointTimePercent",
+                    share(current.safepointTicks - previous.safepointTicks, elapsedTicks), maxSafepointTime,
+                    exceeded);
+        }
+        if (!exceeded.isEmpty()) {
+            out.append(", exceeded=").append(String.join("/", exceeded));
+        }
+        return new CheckResult(exceeded.isEmpty() ? Status.OK : Status.CRITICAL, out.toString());
+    }
+
+    private Counters counters(String pid) throws IOException {
+        Counters jvm = counters.get(pid);
+        if (jvm != null && jvm.isAlive()) {
+            return jvm;
+        }
+        File file = PerfData.find(pid);
+        if (file == null || !PerfData.isRunning(pid)) {
+            counters.remove(pid);
+            return null;
+        }
+        jvm = new Counters(pid, PerfData.map(file));
+        counters.put(pid, jvm);
+        return jvm;
+    }
+
+    /**
+     * Find the process of a main class. The mapping is cached for as long as
+     * the process runs, so only the first check of a JVM maps every
+     * hsperfdata file on the host.
+     */
+    private String findPid(String mainClass) throws IOException {
+        String cached = pids.get(mainClass);
+        if (cached != null && PerfData.find(cached) != null && PerfData.isRunning(cached)) {
+            return cached;
+        }
+        String pid = scan(mainClass);
+        pids.put(mainClass, pid);
+        return pid;
+    }
+
+    private static String scan(String mainClass) throws IOException {
+        List<String> matches = new ArrayList<>();
+        for (File file : PerfData.list()) {
+            if (!PerfData.isRunning(file.getName())) {
+                // left behind by a killed JVM.
+                continue;
+            }
+            try {
+                String command = PerfData.map(file).getString("sun.rt.javaCommand");
+                if (command != null && LocalAttach.matchesMainClass(command, mainClass)) {
+                    matches.add(file.getName());
+                }
+            } catch (IOException e) {
+                // not readable by this user or JVM still starting.
+            }
+        }
+        if (matches.size() != 1) {
+            throw new IOException("Main class " + mainClass + " matches " + matches.size() + " local JVMs: " + matches);
+        }
+        return matches.get(0);
+    }
+
+    /**
+     * @return Share of the elapsed ticks in percent, 0 if no time elapsed.
+     */
+    private static double share(long ticks, double elapsedTicks) {
+        return elapsedTicks > 0 ? ticks * 100 / elapsedTicks : 0;
+    }
+
+    private static double percent(Properties args, String key) {
+        String value = args.getProperty(key);
+        return value == null ? -1 : Double.parseDouble(value);
+    }
+
+    private static void appendPercent(StringBuilder out, String name, double value, double max,
+            List<String> exceeded) {
+        out.append(", ").append(name).append('=').append(Math.round(value * 10) / 10.0);
+        if (max >= 0 && value > max) {
+            exceeded.add(name);
+        }
+    }
+
+    /**
+     * GC and safepoint time of a JVM at one point in time.
+     */
+    private static final class Sample {
+
+        private final long nanos;
+        private final long gcTicks;
+        private final long safepointTicks;
+
+        private Sample(long nanos, long gcTicks, long safepointTicks) {
+            this.nanos = nanos;
+            this.gcTicks = gcTicks;
+            this.safepointTicks = safepointTicks;
+        }
+    }
+
+    /**
+     * Counter locations of one JVM, resolved once so that sampling only reads
+     * memory, and the sample taken by the previous check.
+     */
+    private static final class Counters {
+
+        private final String pid;
+        private final PerfData data;
+        private final int[] used;
+        private final int[] maxCapacity;
+        private final boolean sharedMaxCapacity;
+        private final int[] gcTime;
+        private final int safepointTime;
+        private final int frequency;
+        private volatile Sample previous;
+
+        Counters(String pid, PerfData data) {
+            this.pid = pid;
+            this.data = data;
+            List<Integer> generations = indexed(data, "sun.gc.generation.", ".maxCapacity");
+            List<Integer> spaces = new ArrayList<>();
+            for (int n = 0; n < generations.size(); n++) {
+                spaces.addAll(indexed(data, "sun.gc.generation." + n + ".space.", ".used"));
+            }
+            this.used = toArray(spaces);
+            this.maxCapacity = toArray(generations);
+            // with G1, every generation may grow to the full heap.
+            String policy = data.getString("sun.gc.policy.name");
+            this.sharedMaxCapacity = policy != null && policy.contains("GarbageFirst");
+            this.gcTime = toArray(indexed(data, "sun.gc.collector.", ".time"));
+            this.safepointTime = data.offset("sun.rt.safepointTime");
+            this.frequency = data.offset("sun.os.hrt.frequency");
+        }
+
+        boolean isAlive() {
+            return data.getFile().isFile() && PerfData.isRunning(pid);
+        }
+
+        long heapUsed() {
+            return sum(used);
+        }
+
+        long heapMax() {
+            if (!sharedMaxCapacity) {
+                return sum(maxCapacity);
+            }
+            long max = 0;
+            for (int offset : maxCapacity) {
+                max = Math.max(max, data.getLong(offset));
+            }
+            return max;
+        }
+
+        Sample sample() {
+            return new Sample(System.nanoTime(), sum(gcTime), safepointTime < 0 ? 0 : data.getLong(safepointTime));
+        }
+
+        long frequency() {
+            long ticksPerSecond = frequency < 0 ? 0 : data.getLong(frequency);
+            return ticksPerSecond > 0 ? ticksPerSecond : TimeUnit.SECONDS.toNanos(1);
+        }
+
+        private long sum(int[] offsets) {
+            long sum = 0;
+            for (int offset : offsets) {
+                sum += data.getLong(offset);
+            }
+            return sum;
+        }
+
+        /**
+         * Offsets of the counters prefix + N + suffix, for N = 0, 1, ...
+         */
+        private static List<Integer> indexed(PerfData data, String prefix, String suffix) {
+            List<Integer> offsets = new ArrayList<>();
+            for (int n = 0; data.offset(prefix + n + suffix) >= 0; n++) {
+                offsets.add(data.offset(prefix + n + suffix));
+            }
+            return offsets;
+        }
+
+        private static int[] toArray(List<Integer> offsets) {
+            int[] result = new int[offsets.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = offsets.get(i);
+            }
+            return result;
+        }
+    }
+}
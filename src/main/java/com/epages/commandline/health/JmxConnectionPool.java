@@ -0,0 +1,469 @@
+package com.epages.commandline.health;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Pool of open JMX connectors, keyed by service URL and credentials.
+ * Connectors stay open between checks and are kept healthy without costing
+ * the checks a timeout on a dead connection:
+ * <ul>
+ * <li>a connector reporting a failure or close through its connection
+ * notifications is evicted immediately;
+ * <li>a connector idle for longer than the validation interval is validated
+ * with a cheap getMBeanCount round trip in the background, and before reuse
+ * unless the background validation passed within the interval; a validation
+ * not answered within the validation timeout fails;
+ * <li>a connector idle for longer than the idle timeout is closed.
+ * </ul>
+ * Reconnects reuse the connection server stub of the target, see
+ * {@link RmiStubCache}.
+ */
+class JmxConnectionPool implements Closeable {
+
+    /**
+     * Callback executed against a pooled connection.
+     */
+    interface ConnectionCallback<T> {
+        T doWithConnection(MBeanServerConnection connection) throws Exception;
+    }
+
+    /**
+     * Callback executed against a pooled connector, for callers that need
+     * the connector itself, e.g. to listen for its failure.
+     */
+    interface ConnectorCallback<T> {
+        T doWithConnector(JMXConnector connector) throws Exception;
+    }
+
+    /**
+     * Idle time after which a connector is validated, by default.
+     */
+    static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 5000;
+    /**
+     * Idle time after which a connector is closed, by default.
+     */
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300000;
+    /**
+     * Time a target has to answer a validation.
+     */
+    static final long VALIDATION_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Only hands the sweeps over to the executor of each pool, so a stalled
+     * target cannot hold up the sweeps of other pools.
+     */
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jmx-health-check-pool-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor executor;
+    private final long validationIntervalNanos;
+    private final long idleTimeoutNanos;
+    private final ConcurrentMap<ConnectionKey, PooledConnector> connectors = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> sweep;
+    private final RmiStubCache stubs;
+
+    JmxConnectionPool(JmxHealthCheck check, Executor executor) {
+        this(check, executor, DEFAULT_VALIDATION_INTERVAL_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param check
+     *            Health check used to open connections.
+     * @param executor
+     *            Executor of the checks, running the background sweeps.
+     * @param validationIntervalMillis
+     *            Idle time after which a connector is validated before
+     *            reuse; also the interval of the background sweep.
+     * @param idleTimeoutMillis
+     *            Idle time after which a connector is closed.
+     */
+    JmxConnectionPool(JmxHealthCheck check, Executor executor, long validationIntervalMillis,
+            long idleTimeoutMillis) {
+        this.stubs = new RmiStubCache(check);
+        this.executor = executor;
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.sweep = SWEEPER.scheduleWithFixedDelay(this::startSweep, validationIntervalMillis,
+                validationIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Execute a callback on a pooled connection. If the call fails with an
+     * I/O error, the connector is discarded and the callback is retried once
+     * on a fresh connection.
+     *
+     * @param key
+     *            Connection key.
+     * @param callback
+     *            Callback to run.
+     * @return Result of the callback.
+     * @throws Exception
+     *             If the callback fails on a fresh connection as well.
+     */
+    public <T> T execute(ConnectionKey key, ConnectionCallback<T> callback) throws Exception {
+        return execute(key, Deadline.none(), callback);
+    }
+
+    /**
+     * Execute a callback on a pooled connection within a time budget. When
+     * the budget expires, the connector is removed from the pool and closed.
+     *
+     * @param key
+     *            Connection key.
+     * @param deadline
+     *            Time budget of the check.
+     * @param callback
+     *            Callback to run.
+     * @return Result of the callback.
+     * @throws Exception
+     *             If the callback fails on a fresh connection as well.
+     */
+    public <T> T execute(ConnectionKey key, Deadline deadline, ConnectionCallback<T> callback) throws Exception {
+        return executeOnConnector(key, deadline,
+                connector -> callback.doWithConnection(connector.getMBeanServerConnection()));
+    }
+
+    /**
+     * Execute a callback on a pooled connector within a time budget, like
+     * {@link #execute(ConnectionKey, Deadline, ConnectionCallback)}.
+     *
+     * @param key
+     *            Connection key.
+     * @param deadline
+     *            Time budget of the check.
+     * @param callback
+     *            Callback to run.
+     * @return Result of the callback.
+     * @throws Exception
+     *             If the callback fails on a fresh connection as well.
+     */
+    public <T> T executeOnConnector(ConnectionKey key, Deadline deadline, ConnectorCallback<T> callback)
+            throws Exception {
+        JMXConnector connector = borrow(key, deadline);
+        try {
+            return callback.doWithConnector(connector);
+        } catch (IOException e) {
+            invalidate(key, connector);
+            if (deadline.isExpired()) {
+                throw e;
+            }
+            return callback.doWithConnector(borrow(key, deadline));
+        }
+    }
+
+    /**
+     * Get a validated connector for the given key, opening a new one if
+     * needed.
+     *
+     * @param key
+     *            Connection key.
+     * @return Open connector.
+     * @throws IOException
+     *             If a new connection cannot be established.
+     */
+    public JMXConnector borrow(ConnectionKey key) throws IOException {
+        return borrow(key, Deadline.none());
+    }
+
+    private JMXConnector borrow(ConnectionKey key, Deadline deadline) throws IOException {
+        PooledConnector pooled = connectors.get(key);
+        if (pooled != null) {
+            JMXConnector connector = pooled.connector;
+            deadline.register(() -> invalidate(key, connector));
+            if (pooled.idleNanos() < validationIntervalNanos || pooled.sinceValidatedNanos() < validationIntervalNanos
+                    || isValid(pooled)) {
+                pooled.touch();
+                CheckerStatistics.get().poolHit();
+                return connector;
+            }
+            invalidate(key, connector);
+        }
+        CheckerStatistics.get().poolMiss();
+        JMXConnector created = stubs.connect(key, deadline);
+        PooledConnector added = new PooledConnector(created);
+        PooledConnector existing = connectors.putIfAbsent(key, added);
+        if (existing != null) {
+            closeQuietly(created);
+            existing.touch();
+            deadline.register(() -> invalidate(key, existing.connector));
+            return existing.connector;
+        }
+        CheckerStatistics.get().connectionAdded();
+        created.addConnectionNotificationListener(
+                (notification, handback) -> onConnectionNotification(notification, key, created), null, null);
+        deadline.register(() -> invalidate(key, created));
+        return created;
+    }
+
+    /**
+     * Evict a connector as soon as it reports a failure or was closed,
+     * e.g. by its own connection check.
+     */
+    private void onConnectionNotification(Notification notification, ConnectionKey key, JMXConnector connector) {
+        String type = notification.getType();
+        if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+            invalidate(key, connector);
+        }
+    }
+
+    /**
+     * Remove a connector from the pool and close it.
+     *
+     * @param key
+     *            Connection key.
+     * @param connector
+     *            Connector to remove, only removed if still mapped to key.
+     */
+    public void invalidate(ConnectionKey key, JMXConnector connector) {
+        remove(key, connector, true);
+    }
+
+    private void remove(ConnectionKey key, JMXConnector connector, boolean failed) {
+        PooledConnector pooled = connectors.get(key);
+        if (pooled != null && pooled.connector == connector && connectors.remove(key, pooled)) {
+            CheckerStatistics.get().connectionRemoved(failed);
+            closeQuietly(connector);
+        }
+    }
+
+    /**
+     * Sweep on the executor. Every validation is a task of its own that
+     * nobody waits for, so a stalled target holds up one thread for the
+     * validation timeout at most, and no other validation.
+     */
+    private void startSweep() {
+        try {
+            executor.execute(() -> {
+                for (Runnable validation : expire()) {
+                    executor.execute(validation);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the pool's owner is shutting down.
+        }
+    }
+
+    /**
+     * Sweep and wait for the validations.
+     *
+     * @throws InterruptedException
+     *             If interrupted while waiting for the validations.
+     */
+    void sweep() throws InterruptedException {
+        List<Callable<Object>> validations = new ArrayList<>();
+        for (Runnable validation : expire()) {
+            validations.add(Executors.callable(validation));
+        }
+        for (Future<Object> validation : CheckExecutors.invokeAll(executor, validations)) {
+            try {
+                validation.get();
+            } catch (ExecutionException e) {
+                // isValid does not throw.
+            }
+        }
+    }
+
+    /**
+     * Close connectors idle for longer than the idle timeout, and collect
+     * the validations of those idle and not validated for longer than the
+     * validation interval. A connector still being validated by an earlier
+     * sweep is skipped.
+     */
+    private List<Runnable> expire() {
+        List<Runnable> validations = new ArrayList<>();
+        for (Map.Entry<ConnectionKey, PooledConnector> entry : connectors.entrySet()) {
+            PooledConnector pooled = entry.getValue();
+            long idleNanos = pooled.idleNanos();
+            if (idleNanos >= idleTimeoutNanos) {
+                remove(entry.getKey(), pooled.connector, false);
+            } else if (idleNanos >= validationIntervalNanos && pooled.sinceValidatedNanos() >= validationIntervalNanos
+                    && pooled.validating.compareAndSet(false, true)) {
+                validations.add(() -> {
+                    try {
+                        if (!isValid(pooled)) {
+                            invalidate(entry.getKey(), pooled.connector);
+                        }
+                    } finally {
+                        pooled.validating.set(false);
+                    }
+                });
+            }
+        }
+        return validations;
+    }
+
+    /**
+     * @return Number of open connectors.
+     */
+    public int size() {
+        return connectors.size();
+    }
+
+    @Override
+    public void close() {
+        sweep.cancel(false);
+        for (ConnectionKey key : connectors.keySet()) {
+            PooledConnector pooled = connectors.remove(key);
+            if (pooled != null) {
+                CheckerStatistics.get().connectionRemoved(false);
+                closeQuietly(pooled.connector);
+            }
+        }
+    }
+
+    /**
+     * Cheap liveness check: counting the MBeans is a single small round trip
+     * that does not touch any MBean, and fails fast on a broken connection.
+     * A target not answering within the validation timeout fails as well.
+     */
+    private boolean isValid(PooledConnector pooled) {
+        Deadline deadline = Deadline.after(VALIDATION_TIMEOUT_MILLIS);
+        deadline.register(pooled.connector);
+        try {
+            deadline.call(() -> pooled.connector.getMBeanServerConnection().getMBeanCount());
+            if (deadline.isExpired()) {
+                return false;
+            }
+            pooled.lastValidated = System.nanoTime();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(JMXConnector connector) {
+        try {
+            connector.close();
+        } catch (IOException e) {
+            // connection is gone anyway.
+        }
+    }
+
+    /**
+     * Pooled connector with the time it was last borrowed and last found
+     * valid.
+     */
+    private static final class PooledConnector {
+
+        private final JMXConnector connector;
+        private final AtomicBoolean validating = new AtomicBoolean();
+        private volatile long lastUsed = System.nanoTime();
+        private volatile long lastValidated = lastUsed;
+
+        private PooledConnector(JMXConnector connector) {
+            this.connector = connector;
+        }
+
+        private void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        private long idleNanos() {
+            return System.nanoTime() - lastUsed;
+        }
+
+        private long sinceValidatedNanos() {
+            return System.nanoTime() - lastValidated;
+        }
+    }
+
+    /**
+     * Identifies a connection by service URL and credentials.
+     */
+    static final class ConnectionKey {
+
+        private final JMXServiceURL serviceUrl;
+        private final String username;
+        private final String password;
+        private final long checkPeriodMillis;
+
+        ConnectionKey(JMXServiceURL serviceUrl, String username, String password) {
+            this(serviceUrl, username, password, JmxHealthCheck.DEFAULT_CHECK_PERIOD_MILLIS);
+        }
+
+        /**
+         * @param serviceUrl
+         *            Service URL.
+         * @param username
+         *            Username, may be null.
+         * @param password
+         *            Password, may be null.
+         * @param checkPeriodMillis
+         *            Period of the connector's own dead-connection check, 0
+         *            for none.
+         */
+        ConnectionKey(JMXServiceURL serviceUrl, String username, String password, long checkPeriodMillis) {
+            this.serviceUrl = serviceUrl;
+            this.username = username;
+            this.password = password;
+            this.checkPeriodMillis = checkPeriodMillis;
+        }
+
+        public JMXServiceURL getServiceUrl() {
+            return serviceUrl;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public long getCheckPeriodMillis() {
+            return checkPeriodMillis;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ConnectionKey)) {
+                return false;
+            }
+            ConnectionKey other = (ConnectionKey) obj;
+            return serviceUrl.equals(other.serviceUrl) //
+                    && Objects.equals(username, other.username) //
+                    && Objects.equals(password, other.password) //
+                    && checkPeriodMillis == other.checkPeriodMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serviceUrl, username, password, checkPeriodMillis);
+        }
+
+        @Override
+        public String toString() {
+            return username == null ? serviceUrl.toString() : username + "@" + serviceUrl;
+        }
+    }
+}
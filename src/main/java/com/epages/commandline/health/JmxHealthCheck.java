@@ -1,5 +1,6 @@
 package com.epages.commandline.health;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
@@ -10,7 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
 
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanException;
@@ -19,10 +20,14 @@ import javax.management.MalformedObjectNameException;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import javax.management.ReflectionException;
+import javax.management.openmbean.CompositeData;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 
+import com.epages.commandline.health.JmxConnectionPool.ConnectionCallback;
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+
 public class JmxHealthCheck {
 
     enum Status {
@@ -38,6 +43,18 @@ public class JmxHealthCheck {
             return exitCode;
         }
 
+        /**
+         * @param other
+         *            Other status.
+         * @return The worse of both status: CRITICAL over UNKNOWN over OK.
+         */
+        public Status worst(Status other) {
+            if (this == CRITICAL || other == CRITICAL) {
+                return CRITICAL;
+            }
+            return this == UNKNOWN ? this : other;
+        }
+
     }
 
     /**
@@ -64,6 +81,149 @@ public class JmxHealthCheck {
      * Help output.
      */
     public static final String PROP_HELP = "help";
+    /**
+     * Daemon mode, read checks from standard input.
+     */
+    public static final String PROP_DAEMON = "daemon";
+    /**
+     * Server mode, serve checks on a Unix domain socket or loopback port.
+     */
+    public static final String PROP_SERVER = "server";
+    /**
+     * Allow server mode on a loopback port, which every local user can reach.
+     */
+    public static final String PROP_ALLOW_TCP = "allowTcp";
+    /**
+     * Exporter mode, serve Prometheus metrics on this HTTP port.
+     */
+    public static final String PROP_EXPORTER = "exporter";
+    /**
+     * Seconds between two checks of all targets in exporter mode.
+     */
+    public static final String PROP_REFRESH_INTERVAL = "refreshInterval";
+    /**
+     * Invoke the operation on all MBeans matching the object name pattern,
+     * aggregated by "all", "any", "quorum" or "quorum:n".
+     */
+    public static final String PROP_AGGREGATE = "aggregate";
+    /**
+     * Subscribe to notifications of the MBean in daemon and server mode.
+     */
+    public static final String PROP_SUBSCRIBE = "subscribe";
+    /**
+     * Seconds after which a subscribed target is invoked again if no
+     * notification arrived.
+     */
+    public static final String PROP_HEARTBEAT = "heartbeat";
+    /**
+     * Watch mode, seconds between two invocations.
+     */
+    public static final String PROP_WATCH = "watch";
+    /**
+     * Print phase timings as "text", "json" or "perfdata".
+     */
+    public static final String PROP_TIMINGS = "timings";
+    /**
+     * Append Nagios performance data with timings and numeric values.
+     */
+    public static final String PROP_PERFDATA = "perfdata";
+    /**
+     * File with one target per line, or "-" for standard input.
+     */
+    public static final String PROP_TARGETS = "targets";
+    /**
+     * Maximum number of targets checked concurrently.
+     */
+    public static final String PROP_PARALLELISM = "parallelism";
+    /**
+     * Executor for concurrent checks, "fixed" or "virtual".
+     */
+    public static final String PROP_EXECUTOR = "executor";
+    /**
+     * Time budget of a check in seconds.
+     */
+    public static final String PROP_TIMEOUT = "timeout";
+    /**
+     * Process id of a local JVM to attach to.
+     */
+    public static final String PROP_PID = "pid";
+    /**
+     * Main class or jar name of a local JVM to attach to.
+     */
+    public static final String PROP_MAIN_CLASS = "mainClass";
+    /**
+     * Check a local JVM from its performance counters instead of JMX.
+     */
+    public static final String PROP_HSPERF = "hsperf";
+    /**
+     * Maximum heap usage in percent for the performance counter check.
+     */
+    public static final String PROP_MAX_HEAP = "maxHeap";
+    /**
+     * Maximum share of GC time in percent for the performance counter check.
+     */
+    public static final String PROP_MAX_GC_TIME = "maxGcTime";
+    /**
+     * Maximum share of safepoint time in percent for the performance counter
+     * check.
+     */
+    public static final String PROP_MAX_SAFEPOINT_TIME = "maxSafepointTime";
+    /**
+     * Interval in milliseconds for measuring GC and safepoint time on the
+     * first check of a JVM.
+     */
+    public static final String PROP_SAMPLE_INTERVAL = "sampleInterval";
+    /**
+     * Attributes to read, as object name and attribute separated by '/'. May
+     * be given several times.
+     */
+    public static final String PROP_ATTRIBUTES = "attributes";
+    /**
+     * Time to live of cached results in seconds, in daemon and server mode.
+     */
+    public static final String PROP_CACHE_TTL = "cacheTtl";
+    /**
+     * Seconds a cached result may be served beyond its time to live while it
+     * is refreshed.
+     */
+    public static final String PROP_MAX_STALE = "maxStale";
+    /**
+     * Attribute holding the overall status, read before the operation is
+     * invoked.
+     */
+    public static final String PROP_STATUS_ATTRIBUTE = "statusAttribute";
+    /**
+     * Operation returning the overall status, invoked before the operation.
+     */
+    public static final String PROP_STATUS_OPERATION = "statusOperation";
+    /**
+     * Read the health snapshot of the companion agent instead of invoking the
+     * operation.
+     */
+    public static final String PROP_SNAPSHOT = "snapshot";
+    /**
+     * Maximum age of the agent's health snapshot in seconds.
+     */
+    public static final String PROP_MAX_AGE = "maxAge";
+    /**
+     * Period of the connector's dead-connection check in seconds, 0 for
+     * none.
+     */
+    public static final String PROP_CHECK_PERIOD = "checkPeriod";
+    /**
+     * RMI distributed GC lease in seconds, for the whole process.
+     */
+    public static final String PROP_DGC_LEASE = "dgcLease";
+
+    static final String DEFAULT_OBJECT_NAME = "org.springframework.boot:type=Endpoint,name=healthEndpoint";
+    static final String DEFAULT_SERVICE_URL = "service:jmx:rmi:///jndi/rmi://localhost:1234/jmxrmi";
+    static final String DEFAULT_OPERATION = "getData";
+    static final long DEFAULT_CHECK_PERIOD_MILLIS = 5000;
+
+    static {
+        // before any connection, as RMI reuses its sockets across checks.
+        TimeoutSocketFactory.install();
+    }
 
     /**
      * Open a connection to a MBean server.
@@ -80,14 +240,75 @@ public class JmxHealthCheck {
      *             XX
      */
     public JMXConnector openConnection(JMXServiceURL serviceUrl, String username, String password) throws IOException {
+        return openConnection(serviceUrl, username, password, Deadline.none());
+    }
+
+    /**
+     * Open a connection to a MBean server within a time budget. The
+     * connector is registered with the deadline, so it is closed when the
+     * budget expires.
+     * 
+     * @param serviceUrl
+     *            Service URL.
+     * @param username
+     *            Username
+     * @param password
+     *            Password
+     * @param deadline
+     *            Time budget of the check.
+     * @return MBeanServerConnection if succesfull.
+     * @throws IOException
+     *             If the connection cannot be established.
+     */
+    public JMXConnector openConnection(JMXServiceURL serviceUrl, String username, String password, Deadline deadline)
+            throws IOException {
+        return openConnection(new ConnectionKey(serviceUrl, username, password), deadline);
+    }
+
+    /**
+     * Open a connection to a MBean server within a time budget, with the
+     * connection settings of the key.
+     * 
+     * @param key
+     *            Service URL, credentials and dead-connection check period.
+     * @param deadline
+     *            Time budget of the check.
+     * @return MBeanServerConnection if succesfull.
+     * @throws IOException
+     *             If the connection cannot be established.
+     */
+    public JMXConnector openConnection(ConnectionKey key, Deadline deadline) throws IOException {
+        Map<String, Object> environment = environment(key, deadline);
+        JMXConnector connector = JMXConnectorFactory.newJMXConnector(key.getServiceUrl(), environment);
+        deadline.register(connector);
+        connector.connect(environment);
+        return connector;
+    }
+
+    /**
+     * Connector environment for a connection: credentials, the
+     * dead-connection check and, within a time budget, a socket factory with
+     * timeouts for the registry lookup.
+     * 
+     * @param key
+     *            Service URL, credentials and dead-connection check period.
+     * @param deadline
+     *            Time budget of the check.
+     * @return Connector environment.
+     */
+    Map<String, Object> environment(ConnectionKey key, Deadline deadline) {
         HashMap<String, Object> environment = new HashMap<>();
-        // Add environment variable to check for dead connections.
-        if (username != null && password != null) {
-            environment.put(JMXConnector.CREDENTIALS, new String[] { username, password });
-        } else {
-            environment.put("jmx.remote.x.client.connection.check.period", 5000);
+        if (key.getUsername() != null && key.getPassword() != null) {
+            environment.put(JMXConnector.CREDENTIALS, new String[] { key.getUsername(), key.getPassword() });
+        }
+        // Check for dead connections, with or without credentials; every
+        // checking connector has a thread of its own, 0 disables the check.
+        environment.put("jmx.remote.x.client.connection.check.period", key.getCheckPeriodMillis());
+        if (deadline.isBounded()) {
+            environment.put(TimeoutSocketFactory.JNDI_SOCKET_FACTORY,
+                    new TimeoutSocketFactory(deadline.remainingMillis()));
         }
-        return JMXConnectorFactory.connect(serviceUrl, environment);
+        return environment;
     }
 
     /**
@@ -147,20 +368,148 @@ public class JmxHealthCheck {
         return connection.invoke(objName, operationName, null, null);
     }
 
+    /**
+     * Invoke the operation and evaluate its result.
+     * 
+     * @param connection
+     *            MBean server connection.
+     * @param objectName
+     *            Object name.
+     * @param operationName
+     *            Operation name.
+     * @return Check result.
+     * @throws Exception
+     *             In case of a communication or MBean error.
+     */
+    public CheckResult check(MBeanServerConnection connection, String objectName, String operationName) throws Exception {
+        return evaluate(invoke(connection, objectName, operationName));
+    }
+
+    /**
+     * Invoke the operation on an already resolved MBean and evaluate its
+     * result.
+     * 
+     * @param connection
+     *            MBean server connection.
+     * @param objectName
+     *            Resolved object name.
+     * @param operationName
+     *            Operation name.
+     * @return Check result.
+     * @throws Exception
+     *             In case of a communication or MBean error.
+     */
+    public CheckResult check(MBeanServerConnection connection, ObjectName objectName, String operationName)
+            throws Exception {
+        return evaluate(connection.invoke(objectName, operationName, null, null));
+    }
+
+    /**
+     * Check a target on its own connection within a time budget: invoke its
+     * operation, on every matching MBean if it aggregates, read its
+     * attributes if it is an attribute check, or read the agent's snapshot.
+     * 
+     * @param target
+     *            Target to check.
+     * @param deadline
+     *            Time budget for connect, name resolution and invoke.
+     * @param executor
+     *            Executor for the concurrent invocations or reads of a
+     *            target that aggregates or reads attributes.
+     * @return Check result, CRITICAL if the budget expired.
+     * @throws Exception
+     *             In case of a communication or MBean error.
+     */
+    public CheckResult check(Target target, Deadline deadline, ExecutorService executor) throws Exception {
+        TargetCheck targetCheck = new TargetCheck(this, null, new AttributeCheck(this, executor),
+                new FanOutCheck(this, executor));
+        return check(target, deadline, connection -> targetCheck.check(connection, target, deadline));
+    }
+
+    /**
+     * Invoke the target operation on an already resolved MBean and evaluate
+     * its result. If the target has a status probe, the operation is only
+     * invoked if the probe does not report UP.
+     * 
+     * @param connection
+     *            MBean server connection.
+     * @param objectName
+     *            Resolved object name.
+     * @param target
+     *            Target to check.
+     * @param deadline
+     *            Time budget of the check, for its timings.
+     * @return Check result.
+     * @throws Exception
+     *             In case of a communication or MBean error.
+     */
+    CheckResult check(MBeanServerConnection connection, ObjectName objectName, Target target, Deadline deadline)
+            throws Exception {
+        StatusProbe probe = target.getStatusProbe();
+        Object value = probe != null && probe.isUp(connection, objectName) ? StatusProbe.UP
+                : connection.invoke(objectName, target.getOperation(), null, null);
+        deadline.getTimings().enter(Deadline.PHASE_RENDER);
+        return evaluate(value);
+    }
+
+    /**
+     * Run a check on a new connection to the target within a time budget.
+     * 
+     * @param target
+     *            Target to connect to.
+     * @param deadline
+     *            Time budget, including the connect.
+     * @param callback
+     *            Check to run on the connection.
+     * @return Check result, CRITICAL if the budget expired.
+     * @throws Exception
+     *             In case of a communication or MBean error.
+     */
+    CheckResult check(Target target, Deadline deadline, ConnectionCallback<CheckResult> callback) throws Exception {
+        CheckResult result = deadline.run(() -> {
+            try (JMXConnector connector = new RmiStubCache(this).connect(target.getConnectionKey(), deadline)) {
+                return callback.doWithConnection(connector.getMBeanServerConnection());
+            }
+        });
+        deadline.getTimings().finish();
+        deadline.getTimings().report(target, result);
+        return result;
+    }
+
+    /**
+     * Evaluate the value returned by the MBean operation.
+     * 
+     * @param value
+     *            Operation result.
+     * @return Check result.
+     */
+    CheckResult evaluate(Object value) {
+        if (value == null) {
+            return new CheckResult(Status.CRITICAL, "Value not set. JMX query returned null value.");
+        }
+        Status status = Status.OK;
+        if (value instanceof Map && ((Map<?, ?>) value).containsKey("status")) {
+            status = "UP".equals(((Map<?, ?>) value).get("status")) ? Status.OK : Status.CRITICAL;
+        } else if (value instanceof CompositeData && ((CompositeData) value).containsKey("status")) {
+            status = "UP".equals(((CompositeData) value).get("status")) ? Status.OK : Status.CRITICAL;
+        }
+        String output = HealthRenderer.render(value);
+        return new CheckResult(status, output, value);
+    }
+
     /**
      * Get system properties and execute query.
      * 
      * @param args
      *            Arguments as properties.
      * @return Exit code.
-     * @throws JsonProcessingException
+     * @throws Exception
+     *             In case of a communication or MBean error.
      */
     public int execute(Properties args) throws Exception {
-        String username = args.getProperty(PROP_USERNAME);
-        String password = args.getProperty(PROP_PASSWORD);
-        String objectName = args.getProperty(PROP_OBJECT_NAME, "org.springframework.boot:type=Endpoint,name=healthEndpoint");
-        String serviceUrl = args.getProperty(PROP_SERVICE_URL, "service:jmx:rmi:///jndi/rmi://localhost:1234/jmxrmi");
-        String operation = args.getProperty(PROP_OPERATION, "getData");
+        String objectName = args.getProperty(PROP_OBJECT_NAME, DEFAULT_OBJECT_NAME);
+        String serviceUrl = args.getProperty(PROP_SERVICE_URL, DEFAULT_SERVICE_URL);
+        String operation = args.getProperty(PROP_OPERATION, DEFAULT_OPERATION);
         String help = args.getProperty(PROP_HELP);
 
         PrintStream out = System.out;
@@ -175,34 +524,109 @@ public class JmxHealthCheck {
             return Status.UNKNOWN.getExitCode();
         }
 
-        JMXServiceURL url = new JMXServiceURL(serviceUrl);
-        try (JMXConnector connector = openConnection(url, username, password)) {
-            MBeanServerConnection connection = connector.getMBeanServerConnection();
-            Object value = invoke(connection, objectName, operation);
-            if (value != null) {
-                Status status = Status.OK;
-
-                if (value instanceof Map) {
-                    Map<?, ?> mapValue = (Map<?, ?>) value;
-                    if (mapValue.containsKey("status")) {
-                        status = "UP".equals(mapValue.get("status")) ? Status.OK : Status.CRITICAL;
-                    }
-                    value = mapValue.entrySet() //
-                            .stream() //
-                            .map(entry -> entry.getKey() + "=" + entry.getValue()) //
-                            .collect(Collectors.joining(", "));
-                } else if (value instanceof List) {
-                    value = ((List<?>) value).stream().map(String::valueOf).collect(Collectors.joining(", "));
-                } else {
-                    value = String.valueOf(value);
-                }
-                out.println(value);
-                return status.getExitCode();
-            } else {
-                out.println("Value not set. JMX query returned null value.");
-                return Status.CRITICAL.getExitCode();
+        String dgcLease = args.getProperty(PROP_DGC_LEASE);
+        if (dgcLease != null) {
+            // read once, when RMI's distributed GC client starts.
+            System.setProperty("java.rmi.dgc.leaseValue",
+                    String.valueOf((long) (Double.parseDouble(dgcLease) * 1000)));
+        }
+
+        long timeoutMillis = Deadline.timeoutMillis(args);
+
+        if (args.getProperty(PROP_DAEMON) != null) {
+            ExecutorService executor = executor(args, MultiTargetCheck.DEFAULT_PARALLELISM);
+            try {
+                JmxHealthCheckDaemon daemon = new JmxHealthCheckDaemon(this, args, executor);
+                return daemon.run(new BufferedReader(new InputStreamReader(System.in)), out);
+            } finally {
+                executor.shutdownNow();
             }
         }
+
+        if (args.getProperty(PROP_SERVER) != null) {
+            ExecutorService executor = executor(args, MultiTargetCheck.DEFAULT_PARALLELISM);
+            try {
+                new CheckServer(new JmxHealthCheckDaemon(this, args, executor)).run(args.getProperty(PROP_SERVER),
+                        args.getProperty(PROP_ALLOW_TCP) != null);
+            } finally {
+                executor.shutdownNow();
+            }
+            return Status.OK.getExitCode();
+        }
+
+        if (args.getProperty(PROP_EXPORTER) != null) {
+            List<Target> targets = MultiTargetCheck.targets(args);
+            if (targets.isEmpty()) {
+                targets.add(Target.fromProperties(args));
+            }
+            long intervalMillis = MetricsExporter.intervalMillis(args);
+            ExecutorService executor = executor(args, targets.size());
+            try {
+                new MetricsExporter(this, targets, executor, timeoutMillis > 0 ? timeoutMillis : intervalMillis)
+                        .run(Integer.parseInt(args.getProperty(PROP_EXPORTER)), intervalMillis);
+            } finally {
+                executor.shutdownNow();
+            }
+            return Status.OK.getExitCode();
+        }
+
+        if (args.getProperty(PROP_HSPERF) != null) {
+            CheckResult result = new HsperfCheck().check(args);
+            out.println(result.getOutput());
+            return result.getStatus().getExitCode();
+        }
+
+        if (args.getProperty(PROP_WATCH) != null) {
+            return new WatchCheck(this).run(Target.fromProperties(args), WatchCheck.intervalMillis(args), out);
+        }
+
+        if (args.getProperty(PROP_TARGETS) != null || serviceUrl.indexOf('\n') >= 0) {
+            List<Target> targets = MultiTargetCheck.targets(args);
+            ExecutorService executor = executor(args, targets.size());
+            try {
+                return new MultiTargetCheck(this, executor, timeoutMillis).run(targets, out);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        Deadline deadline = Deadline.after(timeoutMillis);
+        ExecutorService executor = executor(args, MultiTargetCheck.DEFAULT_PARALLELISM);
+        CheckResult result;
+        try {
+            result = check(Target.fromProperties(args), deadline, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+        String timings = args.getProperty(PROP_TIMINGS);
+        if (args.getProperty(PROP_PERFDATA) != null) {
+            out.println(NagiosPerfdata.append(result, deadline.getTimings()).getOutput());
+        } else if (PhaseTimings.PERFDATA.equals(timings)) {
+            out.println(result.getOutput() + " | " + deadline.getTimings().format(timings));
+        } else {
+            out.println(result.getOutput());
+        }
+        if (timings != null && !PhaseTimings.PERFDATA.equals(timings)) {
+            out.println(deadline.getTimings().format(timings));
+        }
+        return result.getStatus().getExitCode();
+    }
+
+    /**
+     * Create the executor for checking several targets concurrently, and for
+     * the concurrent invocations or reads within a check.
+     * 
+     * @param args
+     *            Arguments as properties.
+     * @param targets
+     *            Number of targets; the default parallelism is capped by
+     *            it.
+     * @return Executor of the requested kind and parallelism.
+     */
+    private static ExecutorService executor(Properties args, int targets) {
+        int parallelism = Integer.parseInt(args.getProperty(PROP_PARALLELISM,
+                String.valueOf(Math.min(targets, MultiTargetCheck.DEFAULT_PARALLELISM))));
+        return CheckExecutors.create(args.getProperty(PROP_EXECUTOR, CheckExecutors.FIXED), parallelism);
     }
 
     /**
@@ -269,14 +693,14 @@ public class JmxHealthCheck {
      *            Command line arguments.
      * @return Command line arguments as properties.
      */
-    private static Properties parseArguments(String[] args) {
+    static Properties parseArguments(String[] args) {
         Properties props = new Properties();
         int i = 0;
         while (i < args.length) {
             if ("-h".equals(args[i]))
                 props.put(PROP_HELP, "");
             else if ("-U".equals(args[i]))
-                props.put(PROP_SERVICE_URL, args[++i]);
+                appendProperty(props, PROP_SERVICE_URL, args[++i]);
             else if ("-O".equals(args[i]))
                 props.put(PROP_OBJECT_NAME, args[++i]);
             else if ("--username".equals(args[i]))
@@ -285,8 +709,86 @@ public class JmxHealthCheck {
                 props.put(PROP_PASSWORD, args[++i]);
             else if ("-o".equals(args[i]))
                 props.put(PROP_OPERATION, args[++i]);
+            else if ("-d".equals(args[i]) || "--daemon".equals(args[i]))
+                props.put(PROP_DAEMON, "");
+            else if ("--server".equals(args[i]))
+                props.put(PROP_SERVER, args[++i]);
+            else if ("--allow-tcp".equals(args[i]))
+                props.put(PROP_ALLOW_TCP, "");
+            else if ("--targets".equals(args[i]))
+                props.put(PROP_TARGETS, args[++i]);
+            else if ("--parallelism".equals(args[i]))
+                props.put(PROP_PARALLELISM, args[++i]);
+            else if ("-t".equals(args[i]) || "--timeout".equals(args[i]))
+                props.put(PROP_TIMEOUT, args[++i]);
+            else if ("--pid".equals(args[i]))
+                props.put(PROP_PID, args[++i]);
+            else if ("--main-class".equals(args[i]))
+                props.put(PROP_MAIN_CLASS, args[++i]);
+            else if ("--hsperf".equals(args[i]))
+                props.put(PROP_HSPERF, "");
+            else if ("--max-heap".equals(args[i]))
+                props.put(PROP_MAX_HEAP, args[++i]);
+            else if ("--max-gc-time".equals(args[i]))
+                props.put(PROP_MAX_GC_TIME, args[++i]);
+            else if ("--max-safepoint-time".equals(args[i]))
+                props.put(PROP_MAX_SAFEPOINT_TIME, args[++i]);
+            else if ("--sample-interval".equals(args[i]))
+                props.put(PROP_SAMPLE_INTERVAL, args[++i]);
+            else if ("-A".equals(args[i]) || "--attribute".equals(args[i]))
+                appendProperty(props, PROP_ATTRIBUTES, args[++i]);
+            else if ("--executor".equals(args[i]))
+                props.put(PROP_EXECUTOR, args[++i]);
+            else if ("--cache-ttl".equals(args[i]))
+                props.put(PROP_CACHE_TTL, args[++i]);
+            else if ("--max-stale".equals(args[i]))
+                props.put(PROP_MAX_STALE, args[++i]);
+            else if ("--exporter".equals(args[i]))
+                props.put(PROP_EXPORTER, args[++i]);
+            else if ("--refresh-interval".equals(args[i]))
+                props.put(PROP_REFRESH_INTERVAL, args[++i]);
+            else if ("--aggregate".equals(args[i]))
+                props.put(PROP_AGGREGATE, args[++i]);
+            else if ("--subscribe".equals(args[i]))
+                props.put(PROP_SUBSCRIBE, "");
+            else if ("--heartbeat".equals(args[i]))
+                props.put(PROP_HEARTBEAT, args[++i]);
+            else if ("--watch".equals(args[i]))
+                props.put(PROP_WATCH, args[++i]);
+            else if ("--timings".equals(args[i]))
+                props.put(PROP_TIMINGS, args[++i]);
+            else if ("--perfdata".equals(args[i]))
+                props.put(PROP_PERFDATA, "");
+            else if ("--status-attribute".equals(args[i]))
+                props.put(PROP_STATUS_ATTRIBUTE, args[++i]);
+            else if ("--status-operation".equals(args[i]))
+                props.put(PROP_STATUS_OPERATION, args[++i]);
+            else if ("--snapshot".equals(args[i]))
+                props.put(PROP_SNAPSHOT, "");
+            else if ("--max-age".equals(args[i]))
+                props.put(PROP_MAX_AGE, args[++i]);
+            else if ("--check-period".equals(args[i]))
+                props.put(PROP_CHECK_PERIOD, args[++i]);
+            else if ("--dgc-lease".equals(args[i]))
+                props.put(PROP_DGC_LEASE, args[++i]);
             i++;
         }
         return props;
     }
+
+    /**
+     * Set a property that may be given several times. Values are separated
+     * by newlines.
+     * 
+     * @param props
+     *            Properties.
+     * @param key
+     *            Property key.
+     * @param value
+     *            Value to add.
+     */
+    private static void appendProperty(Properties props, String key, String value) {
+        String existing = props.getProperty(key);
+        props.put(key, existing == null ? value : existing + "\n" + value);
+    }
 }
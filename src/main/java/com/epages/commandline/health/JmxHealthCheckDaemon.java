@@ -0,0 +1,191 @@
+package com.epages.commandline.health;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Resident daemon mode. Reads one check per line from the input, using the
+ * same options as the command line, and answers each with one line
+ * consisting of the status name followed by the check output. Connections
+ * are kept open in a {@link JmxConnectionPool} between checks, and resolved
+ * object name patterns are kept in an {@link ObjectNameCache}. Concurrent
+ * requests for the same target share one invocation through a
+ * {@link CheckCoalescer}, and with a cache TTL results are served from a
+ * {@link ResultCache}. Subscribed targets are answered from their
+ * notifications, see {@link HealthSubscriptions}. The daemon's own
+ * throughput and latency are registered as {@link CheckerStatistics}.
+ */
+class JmxHealthCheckDaemon {
+
+    private final Properties defaults;
+    private final JmxConnectionPool pool;
+    private final HsperfCheck hsperf = new HsperfCheck();
+    private final TargetCheck targetCheck;
+    private final CheckCoalescer inFlight = new CheckCoalescer();
+    private final ResultCache results;
+    private final HealthSubscriptions subscriptions;
+
+    /**
+     * @param check
+     *            Health check used to open connections and evaluate results.
+     * @param defaults
+     *            Options given on the daemon command line, used for every
+     *            option a request line does not set.
+     * @param executor
+     *            Executor for the concurrent reads of a check, background
+     *            refreshes of cached results and connection validations.
+     */
+    JmxHealthCheckDaemon(JmxHealthCheck check, Properties defaults, ExecutorService executor) {
+        this.defaults = defaults;
+        this.pool = new JmxConnectionPool(check, executor);
+        this.results = new ResultCache(executor, System::nanoTime);
+        ObjectNameCache names = new ObjectNameCache(check);
+        this.targetCheck = new TargetCheck(check, names, new AttributeCheck(check, executor),
+                new FanOutCheck(check, executor));
+        this.subscriptions = new HealthSubscriptions(check, pool, names);
+        CheckerStatistics.register();
+    }
+
+    /**
+     * @return Options given on the daemon command line.
+     */
+    Properties getDefaults() {
+        return defaults;
+    }
+
+    /**
+     * Serve checks until the input is exhausted.
+     *
+     * @param in
+     *            Request lines.
+     * @param out
+     *            Result lines.
+     * @return Exit code.
+     * @throws IOException
+     *             If reading the input fails.
+     */
+    public int run(BufferedReader in, PrintStream out) throws IOException {
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                out.println(check(tokenize(line)));
+                out.flush();
+            }
+        } finally {
+            pool.close();
+        }
+        return Status.OK.getExitCode();
+    }
+
+    /**
+     * Run a single check on a pooled connection, join an identical check
+     * already in flight, or serve a cached result.
+     *
+     * @param arguments
+     *            Command line arguments of the check.
+     * @return Check result; failures are reported as CRITICAL.
+     */
+    public CheckResult check(String[] arguments) {
+        Properties args = new Properties(defaults);
+        args.putAll(JmxHealthCheck.parseArguments(arguments));
+        return check(args);
+    }
+
+    /**
+     * Run a single check with arguments already merged with the defaults.
+     *
+     * @param args
+     *            Arguments of the check.
+     * @return Check result; failures are reported as CRITICAL.
+     */
+    CheckResult check(Properties args) {
+        try {
+            if (args.getProperty(JmxHealthCheck.PROP_HSPERF) != null) {
+                return hsperf.check(args);
+            }
+            Target target = Target.fromProperties(args);
+            long timeoutMillis = Deadline.timeoutMillis(args);
+            boolean perfdata = args.getProperty(JmxHealthCheck.PROP_PERFDATA) != null;
+            if (args.getProperty(JmxHealthCheck.PROP_SUBSCRIBE) != null) {
+                Deadline deadline = Deadline.after(timeoutMillis);
+                CheckResult result = subscriptions.check(target, HealthSubscriptions.heartbeatMillis(args), deadline);
+                deadline.getTimings().finish();
+                deadline.getTimings().report(target, result);
+                return perfdata ? NagiosPerfdata.append(result, deadline.getTimings()) : result;
+            }
+            // timings of the check run for this request; a result served
+            // from the cache reports the time it took to serve it.
+            AtomicReference<PhaseTimings> timings = new AtomicReference<>(new PhaseTimings());
+            Thread caller = Thread.currentThread();
+            Callable<CheckResult> check = () -> {
+                Deadline deadline = Deadline.after(timeoutMillis);
+                CheckResult result = deadline.run(() -> inFlight.check(target, deadline,
+                        () -> pool.execute(target.getConnectionKey(), deadline,
+                                connection -> targetCheck.check(connection, target, deadline))));
+                deadline.getTimings().finish();
+                deadline.getTimings().report(target, result);
+                if (Thread.currentThread() == caller) {
+                    timings.set(deadline.getTimings());
+                }
+                return result;
+            };
+            long ttlMillis = ResultCache.ttlMillis(args);
+            CheckResult result = ttlMillis > 0
+                    ? results.get(target, ttlMillis, ResultCache.maxStaleMillis(args), check)
+                    : check.call();
+            if (!perfdata) {
+                return result;
+            }
+            timings.get().finish();
+            return NagiosPerfdata.append(result, timings.get());
+        } catch (Exception e) {
+            return new CheckResult(Status.CRITICAL, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Split a request line into arguments. Whitespace separates arguments,
+     * double quotes group an argument containing whitespace.
+     *
+     * @param line
+     *            Request line.
+     * @return Arguments.
+     */
+    static String[] tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inToken = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+        if (inToken) {
+            tokens.add(token.toString());
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+}
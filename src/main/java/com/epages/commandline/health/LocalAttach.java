@@ -0,0 +1,169 @@
+package com.epages.commandline.health;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Finds the local connector address of a JVM on the same host with the
+ * Attach API, starting the local management agent if needed. Connecting to
+ * that address avoids a remote JMX port and the RMI registry lookup.
+ * <p>
+ * The Attach API is used reflectively: on Java 8 it lives in the JDK's
+ * tools.jar, which is not on the class path of the tool.
+ */
+final class LocalAttach {
+
+    private static final String LOCAL_CONNECTOR_ADDRESS = "com.sun.management.jmxremote.localConnectorAddress";
+
+    private static final ConcurrentMap<String, JMXServiceURL> ADDRESSES = new ConcurrentHashMap<>();
+
+    private static volatile Class<?> virtualMachine;
+
+    private LocalAttach() {
+    }
+
+    /**
+     * Resolve the local connector address selected by process id or main
+     * class name. Addresses are cached as long as the process is running.
+     *
+     * @param args
+     *            Arguments as properties, with a pid or main class.
+     * @return Local connector address.
+     * @throws IOException
+     *             If no unique JVM matches or attaching fails.
+     */
+    static JMXServiceURL serviceUrl(Properties args) throws IOException {
+        String pid = args.getProperty(JmxHealthCheck.PROP_PID);
+        if (pid == null) {
+            pid = findPid(args.getProperty(JmxHealthCheck.PROP_MAIN_CLASS));
+        }
+        JMXServiceURL address = ADDRESSES.get(pid);
+        if (address == null || !isRunning(pid)) {
+            address = attach(pid);
+            ADDRESSES.put(pid, address);
+        }
+        return address;
+    }
+
+    /**
+     * @param pid
+     *            Process id.
+     * @return Local connector address of the process.
+     * @throws IOException
+     *             If attaching fails.
+     */
+    static JMXServiceURL attach(String pid) throws IOException {
+        Object vm = call(null, "attach", new Class<?>[] { String.class }, pid);
+        try {
+            Properties agentProperties = (Properties) call(vm, "getAgentProperties", new Class<?>[0]);
+            String address = agentProperties.getProperty(LOCAL_CONNECTOR_ADDRESS);
+            if (address == null) {
+                address = (String) call(vm, "startLocalManagementAgent", new Class<?>[0]);
+            }
+            return new JMXServiceURL(address);
+        } finally {
+            call(vm, "detach", new Class<?>[0]);
+        }
+    }
+
+    /**
+     * Find the process id of the only local JVM running the given main
+     * class. The class matches by its fully qualified or simple name, or by
+     * the name of an executable jar.
+     *
+     * @param mainClass
+     *            Main class or jar name.
+     * @return Process id.
+     * @throws IOException
+     *             If none or several JVMs match.
+     */
+    static String findPid(String mainClass) throws IOException {
+        List<String> matches = new ArrayList<>();
+        for (Object descriptor : (List<?>) call(null, "list", new Class<?>[0])) {
+            String displayName = (String) call(descriptor, "displayName", new Class<?>[0]);
+            if (matchesMainClass(displayName, mainClass)) {
+                matches.add((String) call(descriptor, "id", new Class<?>[0]));
+            }
+        }
+        if (matches.size() != 1) {
+            throw new IOException("Main class " + mainClass + " matches " + matches.size() + " local JVMs: " + matches);
+        }
+        return matches.get(0);
+    }
+
+    /**
+     * @param command
+     *            Java command line, main class or jar followed by the
+     *            arguments.
+     * @param mainClass
+     *            Main class, simple or fully qualified, or jar name.
+     * @return Whether the command runs the main class.
+     */
+    static boolean matchesMainClass(String command, String mainClass) {
+        String main = command.split(" ", 2)[0];
+        return main.equals(mainClass) || main.endsWith("." + mainClass) || main.endsWith(File.separator + mainClass);
+    }
+
+    private static boolean isRunning(String pid) throws IOException {
+        for (Object descriptor : (List<?>) call(null, "list", new Class<?>[0])) {
+            if (pid.equals(call(descriptor, "id", new Class<?>[0]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object call(Object target, String name, Class<?>[] types, Object... args) throws IOException {
+        try {
+            Class<?> type = target == null ? virtualMachine() : target.getClass();
+            Method method = target == null ? type.getMethod(name, types) : publicMethod(type, name, types);
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.toString(), cause);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Attach API not available: " + e, e);
+        }
+    }
+
+    /**
+     * Look up the method on the public API type, as the implementation
+     * classes are not accessible.
+     */
+    private static Method publicMethod(Class<?> type, String name, Class<?>[] types) throws NoSuchMethodException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            if (c.getName().startsWith("com.sun.tools.attach.") && !c.getName().startsWith("com.sun.tools.attach.spi")) {
+                return c.getMethod(name, types);
+            }
+        }
+        return type.getMethod(name, types);
+    }
+
+    private static Class<?> virtualMachine() throws ClassNotFoundException, IOException {
+        if (virtualMachine == null) {
+            String name = "com.sun.tools.attach.VirtualMachine";
+            try {
+                virtualMachine = Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                File toolsJar = new File(System.getProperty("java.home"), "../lib/tools.jar");
+                if (!toolsJar.isFile()) {
+                    throw e;
+                }
+                ClassLoader loader = new URLClassLoader(new URL[] { toolsJar.toURI().toURL() });
+                virtualMachine = Class.forName(name, true, loader);
+            }
+        }
+        return virtualMachine;
+    }
+}
@@ -0,0 +1,67 @@
+package com.epages.commandline.health;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact latency histogram with one bucket per power of two nanoseconds:
+ * bucket i counts values below 2^i and at least 2^(i-1). Recording is a
+ * single striped increment, so it is cheap under contention; percentiles
+ * are reported as the upper bound of their bucket, i.e. at most twice the
+ * real value.
+ */
+final class Log2Histogram {
+
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+
+    Log2Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos
+     *            Value to record, negative values count as 0.
+     */
+    public void record(long nanos) {
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, nanos))].increment();
+    }
+
+    /**
+     * @param quantile
+     *            Quantile between 0 and 1, e.g. 0.99.
+     * @return Upper bound of the bucket holding the quantile in nanoseconds,
+     *         0 if nothing was recorded.
+     */
+    public long percentile(double quantile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == Long.SIZE - 1 ? Long.MAX_VALUE : 1L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return Number of recorded values.
+     */
+    public long count() {
+        long total = 0;
+        for (LongAdder bucket : buckets) {
+            total += bucket.sum();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,329 @@
+package com.epages.commandline.health;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.openmbean.CompositeData;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Prometheus exporter. Checks all targets on a fixed schedule, over pooled
+ * connections, and serves the outcome of the last round on /metrics in the
+ * Prometheus text format: the status of every target and of every nested
+ * component reporting a status, e.g. diskSpace or rabbit.
+ * <p>
+ * Each round is encoded once into a byte array; a scrape only writes that
+ * array, so it never waits for a target and does not allocate per sample.
+ * The exporter's own throughput and latency are available as
+ * {@link CheckerStatistics}.
+ */
+class MetricsExporter {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Refresh interval if none is given.
+     */
+    static final long DEFAULT_INTERVAL_MILLIS = 15000;
+
+    private final List<Target> targets;
+    private final List<String> labels;
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+    private final JmxConnectionPool pool;
+    private final TargetCheck targetCheck;
+    private final StringBuilder buffer = new StringBuilder(4096);
+    private volatile byte[] snapshot = new byte[0];
+
+    /**
+     * @param check
+     *            Health check.
+     * @param targets
+     *            Targets to export.
+     * @param executor
+     *            Executor running the checks of a round and the validations
+     *            of pooled connections.
+     * @param timeoutMillis
+     *            Time budget per target, 0 for none.
+     * @throws IllegalArgumentException
+     *             If two targets have the same service URL, object name and
+     *             operation, which would export duplicate series.
+     */
+    MetricsExporter(JmxHealthCheck check, List<Target> targets, ExecutorService executor, long timeoutMillis) {
+        this.targets = targets;
+        this.labels = labels(targets);
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        this.pool = new JmxConnectionPool(check, executor);
+        this.targetCheck = new TargetCheck(check, new ObjectNameCache(check), new AttributeCheck(check, executor),
+                new FanOutCheck(check, executor));
+        CheckerStatistics.register();
+    }
+
+    /**
+     * Label the samples of each target with its service URL, object name
+     * and operation, e.g.
+     * {@code target="service:jmx:...",object_name="...",operation="getData"}.
+     */
+    private static List<String> labels(List<Target> targets) {
+        List<String> labels = new ArrayList<>(targets.size());
+        Set<String> unique = new HashSet<>();
+        for (Target target : targets) {
+            StringBuilder label = new StringBuilder("target=\"");
+            escape(target.toString(), label);
+            escape(target.getObjectName(), label.append("\",object_name=\""));
+            escape(target.getOperation(), label.append("\",operation=\""));
+            label.append('"');
+            if (!unique.add(label.toString())) {
+                throw new IllegalArgumentException("Targets must differ in service URL, object name or operation: "
+                        + target + " " + target.getObjectName() + " " + target.getOperation());
+            }
+            labels.add(label.toString());
+        }
+        return labels;
+    }
+
+    /**
+     * Check all targets once, then serve /metrics and refresh in the
+     * background. Returns only when interrupted.
+     *
+     * @param port
+     *            HTTP port.
+     * @param intervalMillis
+     *            Time between the starts of two rounds.
+     * @throws Exception
+     *             If the HTTP server cannot be started.
+     */
+    public void run(int port, long intervalMillis) throws Exception {
+        refresh();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jmx-health-check-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::refreshQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", this::scrape);
+        server.start();
+        scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        byte[] body = snapshot;
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Check all targets concurrently and publish the encoded results.
+     *
+     * @throws InterruptedException
+     *             If interrupted while waiting for results.
+     */
+    void refresh() throws InterruptedException {
+        List<Future<Sample>> futures = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            int index = i;
+            futures.add(executor.submit(() -> sample(index)));
+        }
+        List<Sample> samples = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            try {
+                samples.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                samples.add(new Sample(labels.get(i), false, Status.CRITICAL, null, 0));
+            }
+        }
+        buffer.setLength(0);
+        encode(samples, buffer);
+        snapshot = buffer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Body of the last published scrape.
+     */
+    byte[] getSnapshot() {
+        return snapshot;
+    }
+
+    private Sample sample(int index) {
+        Target target = targets.get(index);
+        long start = System.nanoTime();
+        AtomicBoolean checked = new AtomicBoolean();
+        Deadline deadline = Deadline.after(timeoutMillis);
+        CheckResult result;
+        try {
+            result = deadline.run(() -> pool.execute(target.getConnectionKey(), deadline, connection -> {
+                CheckResult checkResult = targetCheck.check(connection, target, deadline);
+                checked.set(true);
+                return checkResult;
+            }));
+        } catch (Exception e) {
+            result = new CheckResult(Status.CRITICAL, String.valueOf(e.getMessage()));
+        }
+        deadline.getTimings().finish();
+        deadline.getTimings().report(target, result);
+        return new Sample(labels.get(index), checked.get(), result.getStatus(), result.getValue(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Encode samples in the Prometheus text format.
+     *
+     * @param samples
+     *            Samples, one per target.
+     * @param out
+     *            Buffer to append to.
+     */
+    static void encode(List<Sample> samples, StringBuilder out) {
+        family(out, "jmx_health_check_success", "Whether the check of the target returned a result.");
+        for (Sample sample : samples) {
+            sample(out, "jmx_health_check_success", sample.label).append(sample.success ? '1' : '0').append('\n');
+        }
+        family(out, "jmx_health_status", "Whether the target is healthy, 1 for OK.");
+        for (Sample sample : samples) {
+            sample(out, "jmx_health_status", sample.label).append(sample.status == Status.OK ? '1' : '0')
+                    .append('\n');
+        }
+        family(out, "jmx_health_component_status", "Whether a component of the target is UP, by reported status.");
+        for (Sample sample : samples) {
+            components(out, sample.label, null, sample.value);
+        }
+        family(out, "jmx_health_check_duration_seconds", "Duration of the last check of the target.");
+        for (Sample sample : samples) {
+            sample(out, "jmx_health_check_duration_seconds", sample.label).append(sample.durationNanos / 1e9)
+                    .append('\n');
+        }
+    }
+
+    private static void family(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private static StringBuilder sample(StringBuilder out, String name, String label) {
+        return out.append(name).append('{').append(label).append("} ");
+    }
+
+    /**
+     * Walk nested maps and composite data, writing a sample for every entry
+     * reporting a status. The component name is the path of keys, joined by
+     * dots.
+     */
+    private static void components(StringBuilder out, String label, String path, Object value) {
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                component(out, label, path, String.valueOf(entry.getKey()), entry.getValue());
+            }
+        } else if (value instanceof CompositeData) {
+            CompositeData data = (CompositeData) value;
+            for (String key : data.getCompositeType().keySet()) {
+                component(out, label, path, key, data.get(key));
+            }
+        }
+    }
+
+    private static void component(StringBuilder out, String label, String path, String key, Object value) {
+        if (!(value instanceof Map || value instanceof CompositeData)) {
+            return;
+        }
+        String name = path == null ? key : path + "." + key;
+        Object status = status(value);
+        if (status != null) {
+            out.append("jmx_health_component_status{").append(label).append(",component=\"");
+            escape(name, out);
+            out.append("\",status=\"");
+            escape(String.valueOf(status), out);
+            out.append("\"} ").append("UP".equals(status) ? '1' : '0').append('\n');
+        }
+        components(out, label, name, value);
+    }
+
+    private static Object status(Object value) {
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).get("status");
+        }
+        CompositeData data = (CompositeData) value;
+        return data.containsKey("status") ? data.get("status") : null;
+    }
+
+    /**
+     * Escape a label value: backslash, double quote and line feed.
+     *
+     * @param value
+     *            Label value.
+     * @param out
+     *            Buffer to append to.
+     */
+    static void escape(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+     * @param args
+     *            Arguments as properties.
+     * @return Refresh interval in milliseconds from the option in seconds.
+     */
+    static long intervalMillis(Properties args) {
+        String interval = args.getProperty(JmxHealthCheck.PROP_REFRESH_INTERVAL);
+        return interval == null ? DEFAULT_INTERVAL_MILLIS : (long) (Double.parseDouble(interval) * 1000);
+    }
+
+    /**
+     * Outcome of one target's check in a round.
+     */
+    static final class Sample {
+
+        private final String label;
+        private final boolean success;
+        private final Status status;
+        private final Object value;
+        private final long durationNanos;
+
+        Sample(String label, boolean success, Status status, Object value, long durationNanos) {
+            this.label = label;
+            this.success = success;
+            this.status = status;
+            this.value = value;
+            this.durationNanos = durationNanos;
+        }
+    }
+}
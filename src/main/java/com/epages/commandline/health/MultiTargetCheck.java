@@ -0,0 +1,162 @@
+package com.epages.commandline.health;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Checks many targets concurrently in one process. Every target gets its own
+ * connection; all checks are submitted at once to a bounded executor, so the
+ * total run time is close to that of the slowest target.
+ */
+class MultiTargetCheck {
+
+    /**
+     * Upper bound for the number of concurrent checks if no parallelism is
+     * given.
+     */
+    static final int DEFAULT_PARALLELISM = 64;
+
+    private final JmxHealthCheck check;
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    MultiTargetCheck(JmxHealthCheck check, ExecutorService executor) {
+        this(check, executor, 0);
+    }
+
+    /**
+     * @param check
+     *            Health check.
+     * @param executor
+     *            Executor running the checks.
+     * @param timeoutMillis
+     *            Time budget per target, 0 for none.
+     */
+    MultiTargetCheck(JmxHealthCheck check, ExecutorService executor, long timeoutMillis) {
+        this.check = check;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Check all targets and print one line per target, in the given order:
+     * the status, the service URL and the check output.
+     *
+     * @param targets
+     *            Targets to check.
+     * @param out
+     *            Output stream.
+     * @return Aggregate exit code, the worst status of all targets.
+     * @throws InterruptedException
+     *             If interrupted while waiting for results.
+     */
+    public int run(List<Target> targets, PrintStream out) throws InterruptedException {
+        List<Future<CheckResult>> futures = new ArrayList<>(targets.size());
+        for (Target target : targets) {
+            futures.add(executor.submit(() -> check(target)));
+        }
+        Status aggregate = Status.OK;
+        for (int i = 0; i < targets.size(); i++) {
+            CheckResult result = result(futures.get(i));
+            aggregate = aggregate.worst(result.getStatus());
+            out.println(result.getStatus() + " " + targets.get(i) + " " + result.getOutput());
+        }
+        return aggregate.getExitCode();
+    }
+
+    /**
+     * Check a single target on its own connection.
+     *
+     * @param target
+     *            Target to check.
+     * @return Check result; failures are reported as CRITICAL.
+     */
+    CheckResult check(Target target) {
+        try {
+            return check.check(target, Deadline.after(timeoutMillis), executor);
+        } catch (Exception e) {
+            return new CheckResult(Status.CRITICAL, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static CheckResult result(Future<CheckResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return new CheckResult(Status.CRITICAL, String.valueOf(e.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * Collect the targets from the arguments: every service URL given with
+     * repeated -U options, plus every line of the targets file. Target lines
+     * use the command line options; a line consisting of a bare service URL
+     * is accepted as well. Empty lines and lines starting with '#' are
+     * skipped. Options not set on a target line are taken from the
+     * arguments, except for repeated service URLs, which are targets of
+     * their own.
+     *
+     * @param args
+     *            Arguments as properties.
+     * @return Targets.
+     * @throws IOException
+     *             If the targets file cannot be read.
+     */
+    static List<Target> targets(Properties args) throws IOException {
+        List<Target> targets = new ArrayList<>();
+        String serviceUrls = args.getProperty(JmxHealthCheck.PROP_SERVICE_URL);
+        if (serviceUrls != null) {
+            for (String serviceUrl : serviceUrls.split("\n")) {
+                targets.add(target(args, new String[] { "-U", serviceUrl }));
+            }
+        }
+        String file = args.getProperty(JmxHealthCheck.PROP_TARGETS);
+        if (file != null) {
+            Properties defaults = args;
+            if (serviceUrls != null && serviceUrls.indexOf('\n') >= 0) {
+                defaults = new Properties();
+                for (String name : args.stringPropertyNames()) {
+                    defaults.setProperty(name, args.getProperty(name));
+                }
+                defaults.remove(JmxHealthCheck.PROP_SERVICE_URL);
+            }
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8))) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] arguments = JmxHealthCheckDaemon.tokenize(line);
+                    if (!arguments[0].startsWith("-")) {
+                        arguments = new String[] { "-U", line };
+                    }
+                    targets.add(target(defaults, arguments));
+                }
+            }
+        }
+        return targets;
+    }
+
+    private static Target target(Properties defaults, String[] arguments) throws IOException {
+        Properties args = new Properties(defaults);
+        args.putAll(JmxHealthCheck.parseArguments(arguments));
+        return Target.fromProperties(args);
+    }
+
+    private static InputStream open(String file) throws IOException {
+        return "-".equals(file) ? System.in : new FileInputStream(file);
+    }
+}
@@ -0,0 +1,84 @@
+package com.epages.commandline.health;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Nagios performance data: {@code 'label'=value[unit];warn;crit;min;max},
+ * separated by spaces and appended to the output after a pipe, so pipes in
+ * the output itself are replaced. Covers the
+ * time of every phase and the total in seconds, as formatted by
+ * {@link PhaseTimings#format(String)}, followed by every numeric value of the
+ * operation result under its key path, e.g.
+ * {@code 'diskSpace.free'=16598224896}.
+ */
+final class NagiosPerfdata {
+
+    private NagiosPerfdata() {
+    }
+
+    /**
+     * Append performance data to a check result.
+     *
+     * @param result
+     *            Check result.
+     * @param timings
+     *            Timings of the check.
+     * @return Check result with the performance data appended to its output,
+     *         in which pipes are replaced.
+     */
+    static CheckResult append(CheckResult result, PhaseTimings timings) {
+        return new CheckResult(result.getStatus(),
+                result.getOutput().replace('|', '_') + " | " + format(timings, result.getValue()), result.getValue());
+    }
+
+    /**
+     * @param timings
+     *            Timings of the check.
+     * @param value
+     *            Operation result, may be null.
+     * @return Performance data.
+     */
+    static String format(PhaseTimings timings, Object value) {
+        StringBuilder out = new StringBuilder(timings.format(PhaseTimings.PERFDATA));
+        if (value != null) {
+            for (Map.Entry<String, Object> entry : HealthRenderer.flatten(value).entrySet()) {
+                if (isNumber(entry.getValue())) {
+                    label(out.append(' '), entry.getKey().isEmpty() ? "value" : entry.getKey()).append('=')
+                            .append(number((Number) entry.getValue()));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Quote a label; single quotes are doubled, and equals signs, which end
+     * the label, and pipes are replaced.
+     */
+    private static StringBuilder label(StringBuilder out, String label) {
+        return out.append('\'').append(label.replace("'", "''").replace('=', '_').replace('|', '_')).append('\'');
+    }
+
+    private static boolean isNumber(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return !Double.isNaN(d) && !Double.isInfinite(d);
+        }
+        return value instanceof Number;
+    }
+
+    private static String number(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(value.doubleValue()).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof BigInteger) {
+            return value.toString();
+        }
+        return String.valueOf(value.longValue());
+    }
+}
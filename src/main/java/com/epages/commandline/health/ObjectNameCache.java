@@ -0,0 +1,174 @@
+package com.epages.commandline.health;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.relation.MBeanServerNotificationFilter;
+
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+
+/**
+ * Caches the resolution of object name patterns, keyed by connection key
+ * (service URL and credentials) and pattern, so a pattern does not cost a
+ * remote query on every check. The unregistration listener, which keeps a
+ * notification fetcher thread busy per connection, is only added for
+ * connections resolving a pattern.
+ * Entries are dropped when the resolved MBean is unregistered, when the
+ * caller reports an {@link InstanceNotFoundException}, and when the
+ * connection to the target is replaced; the listener is then removed from
+ * the replaced connection.
+ */
+class ObjectNameCache {
+
+    private final JmxHealthCheck check;
+    private final ConcurrentMap<Key, ObjectName> names = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ConnectionKey, MBeanServerConnection> listening = new ConcurrentHashMap<>();
+    private final NotificationListener unregistrations = new UnregistrationListener();
+
+    ObjectNameCache(JmxHealthCheck check) {
+        this.check = check;
+    }
+
+    /**
+     * Resolve an object name or pattern. Only patterns are cached; a plain
+     * object name is returned as is, without a remote call.
+     *
+     * @param connectionKey
+     *            Key of the connection.
+     * @param connection
+     *            MBean server connection.
+     * @param objectName
+     *            Object name or pattern.
+     * @return Resolved object name.
+     * @throws Exception
+     *             If the name cannot be resolved, see
+     *             {@link JmxHealthCheck#getObjectName(MBeanServerConnection, String)}.
+     */
+    public ObjectName resolve(ConnectionKey connectionKey, MBeanServerConnection connection, String objectName)
+            throws Exception {
+        ObjectName name = new ObjectName(objectName);
+        if (!name.isPattern()) {
+            return name;
+        }
+        listen(connectionKey, connection);
+        Key key = new Key(connectionKey, objectName);
+        ObjectName resolved = names.get(key);
+        if (resolved == null) {
+            resolved = check.getObjectName(connection, objectName);
+            names.put(key, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * Drop a resolved name, e.g. after the MBean was not found.
+     *
+     * @param connectionKey
+     *            Key of the connection.
+     * @param objectName
+     *            Object name or pattern.
+     */
+    public void invalidate(ConnectionKey connectionKey, String objectName) {
+        names.remove(new Key(connectionKey, objectName));
+    }
+
+    /**
+     * @return Number of cached names.
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Subscribe to unregistration notifications once per connection. A new
+     * connection for a known key may mean the target was restarted, so its
+     * names are resolved again, and the replaced connection no longer needs
+     * to deliver notifications.
+     */
+    private void listen(ConnectionKey connectionKey, MBeanServerConnection connection) throws Exception {
+        if (listening.get(connectionKey) == connection) {
+            return;
+        }
+        MBeanServerConnection previous = listening.put(connectionKey, connection);
+        if (previous == connection) {
+            return;
+        }
+        if (previous != null) {
+            unlisten(previous);
+        }
+        removeAll(connectionKey, null);
+        MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+        filter.enableAllObjectNames();
+        filter.disableType(MBeanServerNotification.REGISTRATION_NOTIFICATION);
+        try {
+            connection.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, unregistrations, filter,
+                    connectionKey);
+        } catch (IOException | InstanceNotFoundException e) {
+            listening.remove(connectionKey, connection);
+            throw e;
+        }
+    }
+
+    private void unlisten(MBeanServerConnection previous) {
+        try {
+            previous.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, unregistrations);
+        } catch (IOException | JMException | RuntimeException e) {
+            // the replaced connection is usually closed already.
+        }
+    }
+
+    private void removeAll(ConnectionKey connectionKey, ObjectName resolved) {
+        for (Map.Entry<Key, ObjectName> entry : names.entrySet()) {
+            if (entry.getKey().connectionKey.equals(connectionKey)
+                    && (resolved == null || resolved.equals(entry.getValue()))) {
+                names.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private final class UnregistrationListener implements NotificationListener {
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (notification instanceof MBeanServerNotification) {
+                removeAll((ConnectionKey) handback, ((MBeanServerNotification) notification).getMBeanName());
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final ConnectionKey connectionKey;
+        private final String objectName;
+
+        Key(ConnectionKey connectionKey, String objectName) {
+            this.connectionKey = connectionKey;
+            this.objectName = objectName;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return connectionKey.equals(other.connectionKey) && objectName.equals(other.objectName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(connectionKey, objectName);
+        }
+    }
+}
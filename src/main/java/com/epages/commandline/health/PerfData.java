@@ -0,0 +1,267 @@
+package com.epages.commandline.health;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Read-only view of a HotSpot JVM's performance counters, the
+ * {@code hsperfdata_<user>/<pid>} file in the temp directory, /tmp on
+ * Linux. The file is memory mapped and its entry table is indexed once;
+ * afterwards reading a counter is a plain memory read, without JMX, attach
+ * or allocation.
+ * <p>
+ * Supports the version 2 layout used by Java 6 and later. Counter names and
+ * units are those listed by {@code jcmd <pid> PerfCounter.print}.
+ */
+final class PerfData {
+
+    private static final int MAGIC = 0xcafec0c0;
+    private static final int SUPPORTED_MAJOR_VERSION = 2;
+
+    // prologue offsets.
+    private static final int BYTE_ORDER_OFFSET = 4;
+    private static final int MAJOR_VERSION_OFFSET = 5;
+    private static final int ACCESSIBLE_OFFSET = 7;
+    private static final int ENTRY_OFFSET_OFFSET = 24;
+    private static final int NUM_ENTRIES_OFFSET = 28;
+
+    // entry offsets, relative to the entry start.
+    private static final int ENTRY_LENGTH = 0;
+    private static final int ENTRY_NAME_OFFSET = 4;
+    private static final int ENTRY_VECTOR_LENGTH = 8;
+    private static final int ENTRY_DATA_TYPE = 12;
+    private static final int ENTRY_DATA_OFFSET = 16;
+
+    private static final byte TYPE_LONG = 'J';
+    private static final byte TYPE_BYTE = 'B';
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> longs = new HashMap<>();
+    private final Map<String, int[]> strings = new HashMap<>();
+
+    private PerfData(File file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Map a performance data file and index its counters.
+     *
+     * @param file
+     *            hsperfdata file.
+     * @return Performance data.
+     * @throws IOException
+     *             If the file cannot be mapped or has an unsupported format.
+     */
+    static PerfData map(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < NUM_ENTRIES_OFFSET + 4 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a hsperfdata file: " + file);
+        }
+        if (buffer.get(MAJOR_VERSION_OFFSET) != SUPPORTED_MAJOR_VERSION) {
+            throw new IOException("Unsupported hsperfdata version " + buffer.get(MAJOR_VERSION_OFFSET) + ": " + file);
+        }
+        buffer.order(buffer.get(BYTE_ORDER_OFFSET) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        if (buffer.get(ACCESSIBLE_OFFSET) == 0) {
+            throw new IOException("hsperfdata not yet accessible: " + file);
+        }
+        PerfData perfData = new PerfData(file, buffer);
+        perfData.index();
+        return perfData;
+    }
+
+    /**
+     * Find the performance data file of a process, in the directories of all
+     * users.
+     *
+     * @param pid
+     *            Process id.
+     * @return File, null if the process has none.
+     */
+    static File find(String pid) {
+        for (File directory : directories()) {
+            File file = new File(directory, pid);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Performance data files of all JVMs visible on this host.
+     */
+    static List<File> list() {
+        List<File> files = new ArrayList<>();
+        for (File directory : directories()) {
+            File[] children = directory.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isFile() && child.getName().matches("\\d+")) {
+                        files.add(child);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Tell whether a process exists. A JVM killed with SIGKILL, e.g. by the
+     * OOM killer, leaves its performance data file behind, so the file alone
+     * does not mean that the JVM runs. Uses ProcessHandle where available,
+     * /proc on Java 8.
+     *
+     * @param pid
+     *            Process id.
+     * @return Whether the process exists; true if this cannot be told.
+     */
+    static boolean isRunning(String pid) {
+        try {
+            Class<?> handle = Class.forName("java.lang.ProcessHandle");
+            Optional<?> process = (Optional<?>) handle.getMethod("of", long.class).invoke(null, Long.parseLong(pid));
+            return process.isPresent() && (Boolean) handle.getMethod("isAlive").invoke(process.get());
+        } catch (ReflectiveOperationException | NumberFormatException e) {
+            File proc = new File("/proc");
+            return !proc.isDirectory() || new File(proc, pid).isDirectory();
+        }
+    }
+
+    private static List<File> directories() {
+        List<File> directories = new ArrayList<>();
+        for (File temp : tempDirectories()) {
+            File[] children = temp.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory() && child.getName().startsWith("hsperfdata_")) {
+                        directories.add(child);
+                    }
+                }
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * HotSpot on Linux always writes to /tmp, whatever the target's or this
+     * JVM's java.io.tmpdir says; elsewhere it uses the platform's temp
+     * directory, which is java.io.tmpdir unless overridden.
+     */
+    private static Set<File> tempDirectories() {
+        Set<File> temp = new LinkedHashSet<>();
+        if (System.getProperty("os.name", "").startsWith("Linux")) {
+            temp.add(new File("/tmp"));
+        }
+        temp.add(new File(System.getProperty("java.io.tmpdir")));
+        return temp;
+    }
+
+    private void index() {
+        int offset = buffer.getInt(ENTRY_OFFSET_OFFSET);
+        int entries = buffer.getInt(NUM_ENTRIES_OFFSET);
+        for (int i = 0; i < entries; i++) {
+            int length = buffer.getInt(offset + ENTRY_LENGTH);
+            if (length <= 0 || offset + length > buffer.capacity()) {
+                break;
+            }
+            String name = readString(offset + buffer.getInt(offset + ENTRY_NAME_OFFSET), length);
+            int dataOffset = offset + buffer.getInt(offset + ENTRY_DATA_OFFSET);
+            int vectorLength = buffer.getInt(offset + ENTRY_VECTOR_LENGTH);
+            byte type = buffer.get(offset + ENTRY_DATA_TYPE);
+            if (type == TYPE_LONG && vectorLength == 0) {
+                longs.put(name, dataOffset);
+            } else if (type == TYPE_BYTE && vectorLength > 0) {
+                strings.put(name, new int[] { dataOffset, vectorLength });
+            }
+            offset += length;
+        }
+    }
+
+    private String readString(int start, int maxLength) {
+        int end = start;
+        while (end < start + maxLength && end < buffer.capacity() && buffer.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return Names of all long counters.
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(longs.keySet());
+    }
+
+    /**
+     * Look up the location of a long counter, to read it repeatedly with
+     * {@link #getLong(int)}.
+     *
+     * @param name
+     *            Counter name, e.g. "sun.gc.collector.0.time".
+     * @return Offset of the counter value, -1 if there is no such counter.
+     */
+    public int offset(String name) {
+        Integer offset = longs.get(name);
+        return offset == null ? -1 : offset;
+    }
+
+    /**
+     * @param offset
+     *            Counter offset from {@link #offset(String)}.
+     * @return Current counter value.
+     */
+    public long getLong(int offset) {
+        return buffer.getLong(offset);
+    }
+
+    /**
+     * @param name
+     *            Counter name.
+     * @return Current counter value.
+     * @throws IllegalArgumentException
+     *             If there is no such counter.
+     */
+    public long getLong(String name) {
+        int offset = offset(name);
+        if (offset < 0) {
+            throw new IllegalArgumentException("No such counter: " + name);
+        }
+        return getLong(offset);
+    }
+
+    /**
+     * @param name
+     *            String counter name, e.g. "sun.rt.javaCommand".
+     * @return Counter value, null if there is no such counter.
+     */
+    public String getString(String name) {
+        int[] location = strings.get(name);
+        return location == null ? null : readString(location[0], location[1]);
+    }
+}
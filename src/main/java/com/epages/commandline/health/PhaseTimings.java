@@ -0,0 +1,168 @@
+package com.epages.commandline.health;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+/**
+ * Nanosecond timings of the phases of a check: RMI registry lookup,
+ * connect, object name resolution, invoke and rendering of the result. A
+ * check starts in the connect phase. Time is attributed to the phase
+ * entered last, so a phase entered several times, e.g. on a retry,
+ * accumulates.
+ * <p>
+ * Finished timings are also committed as a JFR event if the runtime
+ * supports JFR; see {@code JfrCheckEvent} in the jfr source set, which is
+ * loaded reflectively as jdk.jfr is not part of every Java 8 runtime.
+ */
+final class PhaseTimings {
+
+    static final String TEXT = "text";
+    static final String JSON = "json";
+    static final String PERFDATA = "perfdata";
+
+    static final String[] PHASES = { Deadline.PHASE_LOOKUP, Deadline.PHASE_CONNECT, Deadline.PHASE_RESOLVE,
+            Deadline.PHASE_INVOKE, Deadline.PHASE_RENDER };
+
+    private static final Method JFR_COMMIT = jfrCommit();
+
+    private final long[] nanos = new long[PHASES.length];
+    private final long start;
+    private long mark;
+    private int phase = index(Deadline.PHASE_CONNECT);
+    private long total = -1;
+
+    PhaseTimings() {
+        this.start = System.nanoTime();
+        this.mark = start;
+    }
+
+    /**
+     * Start a phase, ending the current one.
+     *
+     * @param phase
+     *            Phase name, one of the {@link Deadline} phases.
+     */
+    public synchronized void enter(String phase) {
+        long now = System.nanoTime();
+        if (total < 0) {
+            nanos[this.phase] += now - mark;
+        }
+        mark = now;
+        this.phase = index(phase);
+    }
+
+    /**
+     * End the current phase and the total time. Later calls have no effect.
+     */
+    public synchronized void finish() {
+        if (total < 0) {
+            long now = System.nanoTime();
+            nanos[phase] += now - mark;
+            total = now - start;
+        }
+    }
+
+    /**
+     * @param phase
+     *            Phase name.
+     * @return Nanoseconds spent in the phase.
+     */
+    public synchronized long getNanos(String phase) {
+        return nanos[index(phase)];
+    }
+
+    /**
+     * @return Nanoseconds from start to finish, or until now if not finished.
+     */
+    public synchronized long getTotalNanos() {
+        return total < 0 ? System.nanoTime() - start : total;
+    }
+
+    /**
+     * Format the timings.
+     *
+     * @param format
+     *            "text" for humans, "json", or "perfdata" for Nagios
+     *            performance data in seconds.
+     * @return Formatted timings.
+     * @throws IllegalArgumentException
+     *             If the format is unknown.
+     */
+    public synchronized String format(String format) {
+        StringBuilder out = new StringBuilder();
+        if (JSON.equals(format)) {
+            out.append('{');
+            for (int i = 0; i < PHASES.length; i++) {
+                out.append('"').append(PHASES[i]).append("Nanos\":").append(nanos[i]).append(',');
+            }
+            out.append("\"totalNanos\":").append(getTotalNanos()).append('}');
+        } else if (TEXT.equals(format)) {
+            for (int i = 0; i < PHASES.length; i++) {
+                out.append(PHASES[i]).append('=').append(millis(nanos[i])).append(" ms, ");
+            }
+            out.append("total=").append(millis(getTotalNanos())).append(" ms");
+        } else if (PERFDATA.equals(format)) {
+            for (int i = 0; i < PHASES.length; i++) {
+                out.append('\'').append(PHASES[i]).append("'=").append(seconds(nanos[i])).append("s;;;0 ");
+            }
+            out.append("'total'=").append(seconds(getTotalNanos())).append("s;;;0");
+        } else {
+            throw new IllegalArgumentException("Timings format must be text, json or perfdata: " + format);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Record the timings in the {@link CheckerStatistics} and commit them as
+     * a JFR event, if JFR is available.
+     *
+     * @param target
+     *            Checked target.
+     * @param result
+     *            Check result.
+     */
+    public void report(Target target, CheckResult result) {
+        long[] values;
+        synchronized (this) {
+            values = new long[PHASES.length + 1];
+            System.arraycopy(nanos, 0, values, 0, PHASES.length);
+            values[PHASES.length] = getTotalNanos();
+        }
+        CheckerStatistics.get().record(values);
+        if (JFR_COMMIT == null) {
+            return;
+        }
+        try {
+            JFR_COMMIT.invoke(null, target.toString(), result.getStatus().name(), values);
+        } catch (ReflectiveOperationException e) {
+            // profiling only.
+        }
+    }
+
+    private static int index(String phase) {
+        for (int i = 0; i < PHASES.length; i++) {
+            if (PHASES[i].equals(phase)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown phase: " + phase);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    private static Method jfrCommit() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return Class.forName("com.epages.commandline.health.JfrCheckEvent").getDeclaredMethod("commit",
+                    String.class, String.class, long[].class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.epages.commandline.health;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches check results per target, so that monitors polling faster than the
+ * time to live do not multiply the load on the monitored JVM.
+ * <p>
+ * A result younger than the time to live is served as is. An older result
+ * is still served for up to the maximum staleness beyond the time to live,
+ * while a single background check refreshes it (stale-while-revalidate).
+ * Beyond that, or if there is no result yet, the caller runs the check.
+ * Results too old to be served are dropped by a sweep, at most once per
+ * their retention, so targets that are no longer checked do not stay
+ * cached.
+ */
+final class ResultCache {
+
+    private final ConcurrentMap<Target, Entry> entries = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final AtomicLong lastSweep;
+
+    /**
+     * @param executor
+     *            Executor for background refreshes.
+     * @param clock
+     *            Time source in nanoseconds.
+     */
+    ResultCache(Executor executor, LongSupplier clock) {
+        this.executor = executor;
+        this.clock = clock;
+        this.lastSweep = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Get the cached result of a target, running the check if the result is
+     * missing or too old.
+     *
+     * @param target
+     *            Target of the check.
+     * @param ttlMillis
+     *            Time to live of a result.
+     * @param maxStaleMillis
+     *            How long a result may be served beyond its time to live
+     *            while it is refreshed in the background.
+     * @param check
+     *            Check producing a fresh result.
+     * @return Cached or fresh result.
+     * @throws Exception
+     *             If the check fails.
+     */
+    public CheckResult get(Target target, long ttlMillis, long maxStaleMillis, Callable<CheckResult> check)
+            throws Exception {
+        long now = clock.getAsLong();
+        sweep(now, ttlMillis + maxStaleMillis);
+        Entry entry = entries.get(target);
+        if (entry != null) {
+            long ageMillis = TimeUnit.NANOSECONDS.toMillis(now - entry.timestamp);
+            if (ageMillis < ttlMillis) {
+                return entry.result;
+            }
+            if (ageMillis < ttlMillis + maxStaleMillis) {
+                refresh(target, entry, check);
+                return entry.result;
+            }
+        }
+        CheckResult result = check.call();
+        entries.put(target, new Entry(result, clock.getAsLong(), ttlMillis + maxStaleMillis));
+        return result;
+    }
+
+    /**
+     * Drop the results older than their retention, unless the last sweep
+     * was less than the given retention ago.
+     */
+    private void sweep(long now, long retainMillis) {
+        long last = lastSweep.get();
+        if (now - last < TimeUnit.MILLISECONDS.toNanos(retainMillis) || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        entries.values().removeIf(entry -> now - entry.timestamp >= TimeUnit.MILLISECONDS.toNanos(entry.retainMillis));
+    }
+
+    private void refresh(Target target, Entry entry, Callable<CheckResult> check) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                entries.replace(target, entry, new Entry(check.call(), clock.getAsLong(), entry.retainMillis));
+            } catch (Exception e) {
+                // keep serving the stale result until it is too old.
+                entry.refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * @return Number of cached results.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param args
+     *            Arguments as properties.
+     * @return Time to live in milliseconds from the cache TTL option in
+     *         seconds, 0 if not set.
+     */
+    static long ttlMillis(Properties args) {
+        return millis(args.getProperty(JmxHealthCheck.PROP_CACHE_TTL));
+    }
+
+    /**
+     * @param args
+     *            Arguments as properties.
+     * @return Maximum staleness in milliseconds from the max stale option in
+     *         seconds; defaults to the time to live.
+     */
+    static long maxStaleMillis(Properties args) {
+        String maxStale = args.getProperty(JmxHealthCheck.PROP_MAX_STALE);
+        return maxStale == null ? ttlMillis(args) : millis(maxStale);
+    }
+
+    private static long millis(String seconds) {
+        return seconds == null ? 0 : (long) (Double.parseDouble(seconds) * 1000);
+    }
+
+    private static final class Entry {
+
+        private final CheckResult result;
+        private final long timestamp;
+        private final long retainMillis;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(CheckResult result, long timestamp, long retainMillis) {
+            this.result = result;
+            this.timestamp = timestamp;
+            this.retainMillis = retainMillis;
+        }
+    }
+}
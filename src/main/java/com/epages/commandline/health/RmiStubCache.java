@@ -0,0 +1,135 @@
+package com.epages.commandline.health;
+
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXServiceURL;
+import javax.management.remote.rmi.RMIConnector;
+import javax.management.remote.rmi.RMIServer;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+
+/**
+ * Connection server stubs by service URL. A {@code /jndi/} service URL makes
+ * every connect look up the stub in the RMI registry first; with the stub
+ * cached, a reconnect goes straight to the connection server and saves the
+ * registry round trip.
+ * <p>
+ * The lookup is timed as its own phase, {@link Deadline#PHASE_LOOKUP}.
+ * A cached stub becomes invalid when the target restarts. The connect then
+ * fails, and the stub is looked up once more and replaced, unless the
+ * check ran out of time.
+ */
+class RmiStubCache {
+
+    private static final String JNDI_PATH = "/jndi/";
+
+    private final JmxHealthCheck check;
+    private final ConcurrentMap<JMXServiceURL, RMIServer> stubs = new ConcurrentHashMap<>();
+
+    /**
+     * @param check
+     *            Health check providing the connector environment, and
+     *            connecting to service URLs without registry lookup.
+     */
+    RmiStubCache(JmxHealthCheck check) {
+        this.check = check;
+    }
+
+    /**
+     * Open a connection, using the cached stub of the service URL if there
+     * is one.
+     *
+     * @param key
+     *            Service URL, credentials and dead-connection check period.
+     * @param deadline
+     *            Time budget of the check.
+     * @return Open connector.
+     * @throws IOException
+     *             If the connection cannot be established with a freshly
+     *             looked up stub either.
+     */
+    public JMXConnector connect(ConnectionKey key, Deadline deadline) throws IOException {
+        JMXServiceURL serviceUrl = key.getServiceUrl();
+        if (!"rmi".equals(serviceUrl.getProtocol()) || !serviceUrl.getURLPath().startsWith(JNDI_PATH)) {
+            return check.openConnection(key, deadline);
+        }
+        Map<String, Object> environment = check.environment(key, deadline);
+        RMIServer cached = stubs.get(serviceUrl);
+        if (cached != null) {
+            try {
+                return connect(cached, environment, deadline);
+            } catch (IOException e) {
+                if (deadline.isExpired()) {
+                    // out of time, not a stale stub.
+                    throw e;
+                }
+                // the target restarted or is gone, look it up again.
+                stubs.remove(serviceUrl, cached);
+            }
+        }
+        enter(deadline, Deadline.PHASE_LOOKUP);
+        RMIServer stub = lookup(serviceUrl, environment);
+        enter(deadline, Deadline.PHASE_CONNECT);
+        JMXConnector connector = connect(stub, environment, deadline);
+        stubs.put(serviceUrl, stub);
+        return connector;
+    }
+
+    /**
+     * @return Number of cached stubs.
+     */
+    public int size() {
+        return stubs.size();
+    }
+
+    private static void enter(Deadline deadline, String phase) throws IOException {
+        try {
+            deadline.enter(phase);
+        } catch (TimeoutException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static JMXConnector connect(RMIServer stub, Map<String, Object> environment, Deadline deadline)
+            throws IOException {
+        RMIConnector connector = new RMIConnector(stub, environment);
+        deadline.register(connector);
+        connector.connect(environment);
+        return connector;
+    }
+
+    /**
+     * Look up the stub the way {@link RMIConnector} does for a
+     * {@code /jndi/} service URL, with the same environment.
+     */
+    private static RMIServer lookup(JMXServiceURL serviceUrl, Map<String, Object> environment) throws IOException {
+        Hashtable<String, Object> jndiEnvironment = new Hashtable<>();
+        for (Map.Entry<String, Object> entry : environment.entrySet()) {
+            if (entry.getValue() != null) {
+                jndiEnvironment.put(entry.getKey(), entry.getValue());
+            }
+        }
+        try {
+            InitialContext context = new InitialContext(jndiEnvironment);
+            try {
+                Object stub = context.lookup(serviceUrl.getURLPath().substring(JNDI_PATH.length()));
+                if (!(stub instanceof RMIServer)) {
+                    throw new IOException("Not an RMI connector server: " + serviceUrl);
+                }
+                return (RMIServer) stub;
+            } finally {
+                context.close();
+            }
+        } catch (NamingException e) {
+            throw new IOException("Cannot look up " + serviceUrl + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.epages.commandline.health;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Reads the health snapshot published by the companion agent (see the agent
+ * module) with a single getAttributes call. The target evaluates its health
+ * on its own schedule, so the check costs one small round trip regardless of
+ * how expensive the health indicators are.
+ */
+class SnapshotCheck {
+
+    static final String OBJECT_NAME = "com.epages.commandline.health:type=HealthSnapshot";
+
+    private static final String[] ATTRIBUTES = { "StatusCode", "AgeMillis", "Details" };
+
+    /**
+     * Read the snapshot. The status code of the snapshot becomes the status
+     * of the check; a snapshot older than the maximum age is CRITICAL, as
+     * the agent has stopped evaluating.
+     *
+     * @param connection
+     *            MBean server connection.
+     * @param maxAgeMillis
+     *            Maximum age of the snapshot, 0 for any.
+     * @return Check result.
+     * @throws Exception
+     *             In case of a communication error, or if the agent is not
+     *             running in the target.
+     */
+    public CheckResult check(MBeanServerConnection connection, long maxAgeMillis) throws Exception {
+        AttributeList list = connection.getAttributes(new ObjectName(OBJECT_NAME), ATTRIBUTES);
+        Map<String, Object> values = new HashMap<>();
+        for (Attribute attribute : list.asList()) {
+            values.put(attribute.getName(), attribute.getValue());
+        }
+        Object code = values.get("StatusCode");
+        Object age = values.get("AgeMillis");
+        String details = String.valueOf(values.get("Details"));
+        if (!(code instanceof Number) || !(age instanceof Number)) {
+            return new CheckResult(Status.UNKNOWN, "Incomplete health snapshot: " + values.keySet());
+        }
+        if (maxAgeMillis > 0 && ((Number) age).longValue() > maxAgeMillis) {
+            return new CheckResult(Status.CRITICAL, "Health snapshot is " + age + " ms old: " + details);
+        }
+        return new CheckResult(status(((Number) code).intValue()), details);
+    }
+
+    private static Status status(int code) {
+        for (Status status : Status.values()) {
+            if (status.getExitCode() == code) {
+                return status;
+            }
+        }
+        return Status.UNKNOWN;
+    }
+
+    /**
+     * @param args
+     *            Arguments as properties.
+     * @return Maximum snapshot age in milliseconds from the option in
+     *         seconds, 0 if not set.
+     */
+    static long maxAgeMillis(Properties args) {
+        String maxAge = args.getProperty(JmxHealthCheck.PROP_MAX_AGE);
+        return maxAge == null ? 0 : (long) (Double.parseDouble(maxAge) * 1000);
+    }
+}
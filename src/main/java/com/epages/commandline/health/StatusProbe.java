@@ -0,0 +1,90 @@
+package com.epages.commandline.health;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * First tier of a two-tier check: a cheap read of the overall status, an
+ * attribute or an operation without arguments, before the full operation.
+ * Only if the status is not UP is the full operation invoked, so in the
+ * common healthy case neither the details of every indicator are
+ * transferred nor rendered.
+ * <p>
+ * The probe may return the status itself, e.g. "UP" or an enum, or a map or
+ * composite data with a "status" entry.
+ */
+final class StatusProbe {
+
+    /**
+     * Result value of a check answered by the probe.
+     */
+    static final Map<String, Object> UP = Collections.singletonMap("status", "UP");
+
+    private final String attribute;
+    private final String operation;
+
+    private StatusProbe(String attribute, String operation) {
+        this.attribute = attribute;
+        this.operation = operation;
+    }
+
+    /**
+     * @param args
+     *            Arguments as properties.
+     * @return Probe from the status attribute or operation option, null if
+     *         neither is set.
+     * @throws IllegalArgumentException
+     *             If both are set.
+     */
+    static StatusProbe fromProperties(Properties args) {
+        String attribute = args.getProperty(JmxHealthCheck.PROP_STATUS_ATTRIBUTE);
+        String operation = args.getProperty(JmxHealthCheck.PROP_STATUS_OPERATION);
+        if (attribute != null && operation != null) {
+            throw new IllegalArgumentException("Either --status-attribute or --status-operation, not both.");
+        }
+        return attribute == null && operation == null ? null : new StatusProbe(attribute, operation);
+    }
+
+    /**
+     * Read the status.
+     *
+     * @param connection
+     *            MBean server connection.
+     * @param objectName
+     *            Resolved object name.
+     * @return Whether the status is UP.
+     * @throws Exception
+     *             In case of a communication or MBean error.
+     */
+    public boolean isUp(MBeanServerConnection connection, ObjectName objectName) throws Exception {
+        Object value = attribute != null ? connection.getAttribute(objectName, attribute)
+                : connection.invoke(objectName, operation, null, null);
+        if (value instanceof Map) {
+            value = ((Map<?, ?>) value).get("status");
+        } else if (value instanceof CompositeData) {
+            CompositeData data = (CompositeData) value;
+            value = data.containsKey("status") ? data.get("status") : null;
+        }
+        return value != null && "UP".equals(value.toString());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof StatusProbe)) {
+            return false;
+        }
+        StatusProbe other = (StatusProbe) obj;
+        return Objects.equals(attribute, other.attribute) && Objects.equals(operation, other.operation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(attribute, operation);
+    }
+}
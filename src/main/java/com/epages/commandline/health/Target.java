@@ -0,0 +1,168 @@
+package com.epages.commandline.health;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+import javax.management.remote.JMXServiceURL;
+
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+
+/**
+ * A single check target: where to connect and which operation to invoke.
+ */
+final class Target {
+
+    private final ConnectionKey connectionKey;
+    private final String objectName;
+    private final String operation;
+    private final List<String> attributes;
+    private final String aggregate;
+    private final StatusProbe statusProbe;
+    private final Long snapshotMaxAgeMillis;
+
+    /**
+     * @param connectionKey
+     *            Service URL, credentials and dead-connection check period.
+     * @param objectName
+     *            Object name or pattern of the MBean.
+     * @param operation
+     *            Operation to invoke.
+     * @param attributes
+     *            Attributes to read as {@code objectName/attribute}
+     *            instead of invoking the operation; null for none.
+     * @param aggregate
+     *            Aggregation rule for invoking the operation on every
+     *            matching MBean; null to invoke it on a single MBean.
+     * @param statusProbe
+     *            Probe deciding whether the operation must be invoked;
+     *            null to always invoke it.
+     * @param snapshotMaxAgeMillis
+     *            Maximum age of the agent's snapshot to read instead, 0
+     *            for any; null to not read the snapshot.
+     */
+    Target(ConnectionKey connectionKey, String objectName, String operation, List<String> attributes,
+            String aggregate, StatusProbe statusProbe, Long snapshotMaxAgeMillis) {
+        this.connectionKey = connectionKey;
+        this.objectName = objectName;
+        this.operation = operation;
+        this.attributes = attributes;
+        this.aggregate = aggregate;
+        this.statusProbe = statusProbe;
+        this.snapshotMaxAgeMillis = snapshotMaxAgeMillis;
+    }
+
+    /**
+     * Create a target from check arguments, applying the defaults for
+     * missing options. A target selected by process id or main class is
+     * reached through its local connector address.
+     *
+     * @param args
+     *            Arguments as properties.
+     * @return Target.
+     * @throws IOException
+     *             If the service URL is invalid or the local JVM cannot be
+     *             attached.
+     */
+    static Target fromProperties(Properties args) throws IOException {
+        JMXServiceURL serviceUrl;
+        if (args.getProperty(JmxHealthCheck.PROP_PID) != null
+                || args.getProperty(JmxHealthCheck.PROP_MAIN_CLASS) != null) {
+            serviceUrl = LocalAttach.serviceUrl(args);
+        } else {
+            serviceUrl = new JMXServiceURL(
+                    args.getProperty(JmxHealthCheck.PROP_SERVICE_URL, JmxHealthCheck.DEFAULT_SERVICE_URL));
+        }
+        String checkPeriod = args.getProperty(JmxHealthCheck.PROP_CHECK_PERIOD);
+        ConnectionKey key = new ConnectionKey(serviceUrl, args.getProperty(JmxHealthCheck.PROP_USERNAME),
+                args.getProperty(JmxHealthCheck.PROP_PASSWORD), checkPeriod == null
+                        ? JmxHealthCheck.DEFAULT_CHECK_PERIOD_MILLIS : (long) (Double.parseDouble(checkPeriod) * 1000));
+        String attributes = args.getProperty(JmxHealthCheck.PROP_ATTRIBUTES);
+        return new Target(key, args.getProperty(JmxHealthCheck.PROP_OBJECT_NAME, JmxHealthCheck.DEFAULT_OBJECT_NAME),
+                args.getProperty(JmxHealthCheck.PROP_OPERATION, JmxHealthCheck.DEFAULT_OPERATION),
+                attributes == null ? null : Arrays.asList(attributes.split("\n")),
+                args.getProperty(JmxHealthCheck.PROP_AGGREGATE), StatusProbe.fromProperties(args),
+                args.getProperty(JmxHealthCheck.PROP_SNAPSHOT) == null ? null : SnapshotCheck.maxAgeMillis(args));
+    }
+
+    public ConnectionKey getConnectionKey() {
+        return connectionKey;
+    }
+
+    public JMXServiceURL getServiceUrl() {
+        return connectionKey.getServiceUrl();
+    }
+
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return Attributes to read instead of invoking the operation, as
+     *         {@code objectName/attribute}; null for an operation check.
+     */
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return Aggregation rule for invoking the operation on every MBean
+     *         matching the object name pattern, see {@link FanOutCheck};
+     *         null to require a unique match.
+     */
+    public String getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * @return Probe reading the status before the operation is invoked, see
+     *         {@link StatusProbe}; null to always invoke the operation.
+     */
+    public StatusProbe getStatusProbe() {
+        return statusProbe;
+    }
+
+    /**
+     * @return Maximum age of the agent's health snapshot to read instead of
+     *         invoking the operation, see {@link SnapshotCheck}, 0 for any;
+     *         null for an operation check.
+     */
+    public Long getSnapshotMaxAgeMillis() {
+        return snapshotMaxAgeMillis;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Target)) {
+            return false;
+        }
+        Target other = (Target) obj;
+        return connectionKey.equals(other.connectionKey) //
+                && objectName.equals(other.objectName) //
+                && operation.equals(other.operation) //
+                && Objects.equals(attributes, other.attributes) //
+                && Objects.equals(aggregate, other.aggregate) //
+                && Objects.equals(statusProbe, other.statusProbe) //
+                && Objects.equals(snapshotMaxAgeMillis, other.snapshotMaxAgeMillis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(connectionKey, objectName, operation, attributes, aggregate, statusProbe,
+                snapshotMaxAgeMillis);
+    }
+
+    @Override
+    public String toString() {
+        return getServiceUrl().toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.epages.commandline.health;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+/**
+ * Checks a target on an open connection, the way the target asks for: read
+ * the agent's snapshot, read attributes, invoke the operation on every MBean
+ * matching a pattern, or resolve the object name and invoke the operation,
+ * behind the status probe if there is one. Used by the single check, the
+ * daemon and the exporter alike.
+ */
+class TargetCheck {
+
+    private final JmxHealthCheck check;
+    private final ObjectNameCache names;
+    private final AttributeCheck attributes;
+    private final FanOutCheck fanOut;
+    private final SnapshotCheck snapshot = new SnapshotCheck();
+
+    /**
+     * @param check
+     *            Health check evaluating the operation result.
+     * @param names
+     *            Cache for resolved object name patterns; null to resolve
+     *            the name on every check.
+     * @param attributes
+     *            Check for targets reading attributes.
+     * @param fanOut
+     *            Check for targets aggregating over a pattern.
+     */
+    TargetCheck(JmxHealthCheck check, ObjectNameCache names, AttributeCheck attributes, FanOutCheck fanOut) {
+        this.check = check;
+        this.names = names;
+        this.attributes = attributes;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Check a target. If the MBean a cached name resolved to is gone, the
+     * name is resolved once more.
+     *
+     * @param connection
+     *            MBean server connection to the target.
+     * @param target
+     *            Target to check.
+     * @param deadline
+     *            Time budget of the check, for its timings.
+     * @return Check result; its value is the operation result, if the
+     *         operation was invoked on a single MBean.
+     * @throws Exception
+     *             In case of a communication or MBean error.
+     */
+    public CheckResult check(MBeanServerConnection connection, Target target, Deadline deadline) throws Exception {
+        if (target.getSnapshotMaxAgeMillis() != null) {
+            deadline.enter(Deadline.PHASE_INVOKE);
+            return snapshot.check(connection, target.getSnapshotMaxAgeMillis());
+        }
+        if (target.getAttributes() != null) {
+            deadline.enter(Deadline.PHASE_INVOKE);
+            return attributes.check(connection, target.getAttributes());
+        }
+        if (target.getAggregate() != null) {
+            deadline.enter(Deadline.PHASE_INVOKE);
+            return fanOut.check(connection, target.getObjectName(), target.getOperation(), target.getAggregate());
+        }
+        deadline.enter(Deadline.PHASE_RESOLVE);
+        ObjectName objectName = resolve(connection, target);
+        try {
+            deadline.enter(Deadline.PHASE_INVOKE);
+            return check.check(connection, objectName, target, deadline);
+        } catch (InstanceNotFoundException e) {
+            if (names == null) {
+                throw e;
+            }
+            names.invalidate(target.getConnectionKey(), target.getObjectName());
+            objectName = resolve(connection, target);
+            return check.check(connection, objectName, target, deadline);
+        }
+    }
+
+    private ObjectName resolve(MBeanServerConnection connection, Target target) throws Exception {
+        return names == null ? check.getObjectName(connection, target.getObjectName())
+                : names.resolve(target.getConnectionKey(), connection, target.getObjectName());
+    }
+}
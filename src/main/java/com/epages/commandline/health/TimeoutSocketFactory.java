@@ -0,0 +1,129 @@
+package com.epages.commandline.health;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMISocketFactory;
+
+/**
+ * RMI socket factory with connect and read timeouts, so a half-open socket or
+ * a target stuck in a GC pause cannot block a check forever.
+ * <p>
+ * The timeouts follow the {@link Deadline} of the thread using the socket:
+ * RMI reads the reply of a call on the calling thread, so every read is
+ * bounded by what is left of that thread's budget. As RMI reuses sockets
+ * across calls and threads, the read timeout is set anew for every read.
+ * Threads without a deadline, e.g. RMI's own distributed GC or the
+ * notification fetcher, use the factory's default timeout.
+ */
+class TimeoutSocketFactory extends RMISocketFactory implements Serializable {
+
+    /**
+     * JNDI environment property for the socket factory used to look up the
+     * connector stub in the RMI registry.
+     */
+    static final String JNDI_SOCKET_FACTORY = "com.sun.jndi.rmi.factory.socket";
+
+    private static final long serialVersionUID = 1L;
+
+    private final int timeoutMillis;
+
+    /**
+     * @param timeoutMillis
+     *            Connect and read timeout in milliseconds for threads
+     *            without a deadline, 0 for none.
+     */
+    TimeoutSocketFactory(int timeoutMillis) {
+        this.timeoutMillis = Math.max(timeoutMillis, 0);
+    }
+
+    /**
+     * Install a factory without default timeout as the process-wide default
+     * for RMI connections, which is used by connector stubs that do not
+     * bring their own factory. RMI keeps idle sockets for reuse, so this must
+     * happen before the first connection. Only the first call has an effect;
+     * a factory installed by someone else is left in place.
+     */
+    static synchronized void install() {
+        if (RMISocketFactory.getSocketFactory() == null) {
+            try {
+                RMISocketFactory.setSocketFactory(new TimeoutSocketFactory(0));
+            } catch (IOException | SecurityException e) {
+                // checks are then bounded by closing their connector only.
+            }
+        }
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = new DeadlineSocket(timeoutMillis);
+        try {
+            socket.connect(new InetSocketAddress(host, port), Deadline.currentTimeoutMillis(timeoutMillis));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return RMISocketFactory.getDefaultSocketFactory().createServerSocket(port);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TimeoutSocketFactory && ((TimeoutSocketFactory) obj).timeoutMillis == timeoutMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Socket setting the read timeout of the reading thread before every
+     * read.
+     */
+    private static final class DeadlineSocket extends Socket {
+
+        private final int defaultTimeoutMillis;
+        private InputStream in;
+
+        private DeadlineSocket(int defaultTimeoutMillis) {
+            this.defaultTimeoutMillis = defaultTimeoutMillis;
+        }
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = new FilterInputStream(super.getInputStream()) {
+
+                    @Override
+                    public int read() throws IOException {
+                        bound();
+                        return super.read();
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        bound();
+                        return super.read(b, off, len);
+                    }
+                };
+            }
+            return in;
+        }
+
+        private void bound() throws IOException {
+            int timeout = Deadline.currentTimeoutMillis(defaultTimeoutMillis);
+            if (getSoTimeout() != timeout) {
+                setSoTimeout(timeout);
+            }
+        }
+    }
+}
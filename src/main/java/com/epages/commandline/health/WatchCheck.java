@@ -0,0 +1,166 @@
+package com.epages.commandline.health;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Watch mode for debugging: invokes the operation on a fixed schedule over
+ * one connection and prints only what changed since the previous call. The
+ * result is flattened to key paths, e.g. {@code diskSpace.free}; every line
+ * starts with the time, the latency of the call and the status, followed by
+ * the changed values:
+ *
+ * <pre>
+ * 2017-01-31T10:15:30.120Z 4.2 ms CRITICAL status=DOWN (was UP), rabbit.status=DOWN (was UP)
+ * </pre>
+ *
+ * The first call prints all values. The connection is reopened after a
+ * communication error.
+ */
+class WatchCheck {
+
+    private final JmxHealthCheck check;
+
+    WatchCheck(JmxHealthCheck check) {
+        this.check = check;
+    }
+
+    /**
+     * Watch a target until interrupted.
+     *
+     * @param target
+     *            Target to watch.
+     * @param intervalMillis
+     *            Time between the starts of two calls.
+     * @param out
+     *            Output stream.
+     * @return Exit code of the last call.
+     */
+    public int run(Target target, long intervalMillis, PrintStream out) {
+        return run(target, intervalMillis, out, Long.MAX_VALUE);
+    }
+
+    int run(Target target, long intervalMillis, PrintStream out, long calls) {
+        Map<String, Object> previous = Collections.emptyMap();
+        Status status = Status.UNKNOWN;
+        JMXConnector connector = null;
+        ObjectName objectName = null;
+        long next = System.nanoTime();
+        try {
+            for (long call = 0; call < calls; call++) {
+                if (call > 0) {
+                    next += TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+                    TimeUnit.NANOSECONDS.sleep(Math.max(0, next - System.nanoTime()));
+                }
+                long start = System.nanoTime();
+                try {
+                    if (connector == null) {
+                        connector = check.openConnection(target.getConnectionKey(), Deadline.none());
+                        objectName = null;
+                    }
+                    MBeanServerConnection connection = connector.getMBeanServerConnection();
+                    if (objectName == null) {
+                        objectName = check.getObjectName(connection, target.getObjectName());
+                    }
+                    Object value = connection.invoke(objectName, target.getOperation(), null, null);
+                    long latency = System.nanoTime() - start;
+                    status = check.evaluate(value).getStatus();
+                    Map<String, Object> current = HealthRenderer.flatten(value);
+                    String changes = diff(previous, current);
+                    if (!changes.isEmpty()) {
+                        out.println(line(latency, status, changes));
+                    }
+                    previous = current;
+                } catch (Exception e) {
+                    status = Status.CRITICAL;
+                    out.println(line(System.nanoTime() - start, status, String.valueOf(e.getMessage())));
+                    previous = Collections.emptyMap();
+                    if (e instanceof IOException) {
+                        closeQuietly(connector);
+                        connector = null;
+                    } else {
+                        objectName = null;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(connector);
+        }
+        return status.getExitCode();
+    }
+
+    private static String line(long latencyNanos, Status status, String text) {
+        String latency = String.format(Locale.ROOT, "%.1f", latencyNanos / 1e6);
+        return Instant.now() + " " + latency + " ms " + status + " " + text;
+    }
+
+    /**
+     * Describe the differences between two flattened results.
+     *
+     * @param previous
+     *            Previous values by key path.
+     * @param current
+     *            Current values by key path.
+     * @return Changed, new and removed values, empty if nothing changed.
+     */
+    static String diff(Map<String, Object> previous, Map<String, Object> current) {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            String key = entry.getKey();
+            if (!previous.containsKey(key)) {
+                separate(out).append(key(key)).append('=').append(entry.getValue());
+            } else if (!Objects.equals(previous.get(key), entry.getValue())) {
+                separate(out).append(key(key)).append('=').append(entry.getValue()).append(" (was ")
+                        .append(previous.get(key)).append(')');
+            }
+        }
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                separate(out).append(key(key)).append(" (removed)");
+            }
+        }
+        return out.toString();
+    }
+
+    private static StringBuilder separate(StringBuilder out) {
+        return out.length() > 0 ? out.append(", ") : out;
+    }
+
+    private static String key(String key) {
+        return key.isEmpty() ? "value" : key;
+    }
+
+    private static void closeQuietly(JMXConnector connector) {
+        if (connector != null) {
+            try {
+                connector.close();
+            } catch (IOException e) {
+                // connection is gone anyway.
+            }
+        }
+    }
+
+    /**
+     * @param args
+     *            Arguments as properties.
+     * @return Watch interval in milliseconds from the option in seconds.
+     */
+    static long intervalMillis(Properties args) {
+        return (long) (Double.parseDouble(args.getProperty(JmxHealthCheck.PROP_WATCH)) * 1000);
+    }
+}
@@ -0,0 +1,55 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class AttributeCheckTest {
+
+    private static final String DELEGATE = "JMImplementation:type=MBeanServerDelegate";
+
+    private final MBeanServer server = MBeanServerFactory.newMBeanServer();
+    private final AttributeCheck check = new AttributeCheck(new JmxHealthCheck(), ForkJoinPool.commonPool());
+
+    @Test
+    public void should_group_attributes_by_object_name() {
+        Map<String, List<String>> groups = AttributeCheck.group(
+                Arrays.asList("java.lang:type=Memory/HeapMemoryUsage", "java.lang:type=Threading/ThreadCount",
+                        "java.lang:type=Memory/ObjectPendingFinalizationCount"));
+
+        assertEquals(2, groups.size());
+        assertEquals(Arrays.asList("HeapMemoryUsage", "ObjectPendingFinalizationCount"),
+                groups.get("java.lang:type=Memory"));
+    }
+
+    @Test
+    public void should_read_attributes_in_requested_order() throws Exception {
+        CheckResult result = check.check(server,
+                Arrays.asList(DELEGATE + "/SpecificationName", DELEGATE + "/MBeanServerId"));
+
+        ObjectName delegate = new ObjectName(DELEGATE);
+        assertEquals(Status.OK, result.getStatus());
+        assertEquals(DELEGATE + "/SpecificationName=" + server.getAttribute(delegate, "SpecificationName") + ", "
+                + DELEGATE + "/MBeanServerId=" + server.getAttribute(delegate, "MBeanServerId"), result.getOutput());
+    }
+
+    @Test
+    public void should_report_missing_attributes() throws Exception {
+        CheckResult result = check.check(server, Arrays.asList(DELEGATE + "/MBeanServerId", DELEGATE + "/Unknown"));
+
+        assertEquals(Status.CRITICAL, result.getStatus());
+        assertTrue(result.getOutput().endsWith("missing=[" + DELEGATE + "/Unknown]"));
+    }
+}
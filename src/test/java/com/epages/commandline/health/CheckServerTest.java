@@ -0,0 +1,129 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckServerTest {
+
+    private JmxServerFixture fixture;
+    private ServerSocketChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+        channel = CheckServer.open("0", true);
+        CheckServer server = new CheckServer(new JmxHealthCheckDaemon(new JmxHealthCheck(), new Properties(),
+                ForkJoinPool.commonPool()));
+        Thread thread = new Thread(() -> {
+            try {
+                server.run(channel);
+            } catch (Exception e) {
+                // closed by tearDown.
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        channel.close();
+        fixture.close();
+    }
+
+    @Test
+    public void should_answer_with_exit_code_and_output() throws Exception {
+        assertEquals("0\nstatus=UP", request("-U", fixture.getServiceUrl().toString()));
+        fixture.getEndpoint().setStatus("DOWN");
+        assertEquals("1\nstatus=DOWN", request("-U", fixture.getServiceUrl().toString()));
+    }
+
+    @Test
+    public void should_accept_empty_argument() throws Exception {
+        assertEquals("0\nstatus=UP", request("-U", fixture.getServiceUrl().toString(), "--username", ""));
+    }
+
+    @Test
+    public void should_reject_local_attach_options() throws Exception {
+        assertEquals("2\n--pid and --main-class are not accepted from clients.", request("--pid", "1"));
+        assertEquals("2\n--pid and --main-class are not accepted from clients.", request("--main-class", "App"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_require_opt_in_for_tcp() throws Exception {
+        CheckServer.open("0", false);
+    }
+
+    @Test
+    public void should_restrict_unix_domain_socket_to_owner() throws Exception {
+        File socket = new File(Files.createTempDirectory("check-server").toFile(), "check.sock");
+        ServerSocketChannel unix;
+        try {
+            unix = CheckServer.open(socket.getPath(), false);
+        } catch (IOException e) {
+            // Unix domain sockets need Java 16 or later.
+            assumeTrue(false);
+            return;
+        }
+        try {
+            assertEquals(PosixFilePermissions.fromString("rw-------"),
+                    Files.getPosixFilePermissions(socket.toPath()));
+            assertArrayEquals(new String[] { socket.getName() }, socket.getParentFile().list());
+        } finally {
+            unix.close();
+            socket.delete();
+        }
+    }
+
+    @Test
+    public void should_keep_server_credentials_to_its_own_target() {
+        Properties defaults = JmxHealthCheck.parseArguments(new String[] { "-U", "service:jmx:rmi://own",
+                "--username", "monitorRole", "--password", "secret", "-t", "5" });
+        Properties own = CheckServer.arguments(JmxHealthCheck.parseArguments(
+                new String[] { "-U", "service:jmx:rmi://own" }), defaults);
+        assertEquals("monitorRole", own.getProperty(JmxHealthCheck.PROP_USERNAME));
+        assertEquals("secret", own.getProperty(JmxHealthCheck.PROP_PASSWORD));
+
+        Properties other = CheckServer.arguments(JmxHealthCheck.parseArguments(
+                new String[] { "-U", "service:jmx:rmi://other" }), defaults);
+        assertNull(other.getProperty(JmxHealthCheck.PROP_USERNAME));
+        assertNull(other.getProperty(JmxHealthCheck.PROP_PASSWORD));
+        assertEquals("5", other.getProperty(JmxHealthCheck.PROP_TIMEOUT));
+        assertEquals("monitorRole", defaults.getProperty(JmxHealthCheck.PROP_USERNAME));
+    }
+
+    private String request(String... arguments) throws Exception {
+        int port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(arguments.length + "\n");
+            for (String argument : arguments) {
+                out.write(argument + "\n");
+            }
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            return in.readLine() + "\n" + in.readLine();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class CheckerStatisticsTest {
+
+    @Test
+    public void should_report_percentiles_as_bucket_upper_bounds() {
+        Log2Histogram histogram = new Log2Histogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000000);
+        }
+
+        assertEquals(100, histogram.count());
+        assertEquals(1024, histogram.percentile(0.5));
+        assertEquals(1024, histogram.percentile(0.9));
+        assertEquals(1048576, histogram.percentile(0.99));
+        assertEquals(0, new Log2Histogram().percentile(0.5));
+    }
+
+    @Test
+    public void should_count_rate_with_negative_clock() {
+        long[] now = { -TimeUnit.SECONDS.toNanos(90) - 1 };
+        CheckerStatistics statistics = new CheckerStatistics(() -> now[0]);
+        long[] nanos = new long[PhaseTimings.PHASES.length + 1];
+
+        for (int i = 0; i < 30; i++) {
+            statistics.record(nanos);
+            now[0] += TimeUnit.SECONDS.toNanos(1);
+        }
+        assertEquals(0.5, statistics.getChecksPerSecond(), 0.001);
+
+        now[0] += TimeUnit.SECONDS.toNanos(60);
+        assertEquals(0, statistics.getChecksPerSecond(), 0.001);
+    }
+
+    @Test
+    public void should_expose_daemon_statistics_as_platform_mbean() throws Exception {
+        try (JmxServerFixture fixture = new JmxServerFixture()) {
+            JmxHealthCheckDaemon daemon = new JmxHealthCheckDaemon(new JmxHealthCheck(), new Properties(),
+                    ForkJoinPool.commonPool());
+            String[] args = { "-U", fixture.getServiceUrl().toString() };
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(CheckerStatistics.OBJECT_NAME);
+            long checks = (Long) server.getAttribute(name, "Checks");
+
+            assertEquals(Status.OK, daemon.check(args).getStatus());
+            assertEquals(Status.OK, daemon.check(args).getStatus());
+
+            assertEquals(checks + 2, server.getAttribute(name, "Checks"));
+            assertEquals(0L, server.getAttribute(name, "InFlight"));
+            assertTrue((Double) server.getAttribute(name, "ChecksPerSecond") > 0);
+            assertTrue((Double) server.getAttribute(name, "PoolHitRate") > 0);
+            TabularData latency = (TabularData) server.getAttribute(name, "LatencyMillis");
+            CompositeData total = latency.get(new Object[] { "total.p99" });
+            assertTrue((Double) total.get("value") > 0);
+        }
+    }
+}
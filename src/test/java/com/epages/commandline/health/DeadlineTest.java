@@ -0,0 +1,75 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class DeadlineTest {
+
+    private JmxServerFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Test
+    public void should_report_critical_when_invoke_exceeds_budget() throws Exception {
+        fixture.getEndpoint().setDelayMillis(5000);
+        long start = System.nanoTime();
+
+        CheckResult result = new JmxHealthCheck().check(target(), Deadline.after(300), ForkJoinPool.commonPool());
+
+        assertEquals(Status.CRITICAL, result.getStatus());
+        assertEquals("Timeout after 300 ms during invoke.", result.getOutput());
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 2000);
+    }
+
+    @Test
+    public void should_check_within_budget() throws Exception {
+        CheckResult result = new JmxHealthCheck().check(target(), Deadline.after(5000), ForkJoinPool.commonPool());
+
+        assertEquals(Status.OK, result.getStatus());
+    }
+
+    @Test
+    public void should_run_check_on_calling_thread() throws Exception {
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> worker = new AtomicReference<>();
+
+        Deadline.after(1000).run(() -> {
+            worker.set(Thread.currentThread());
+            return new CheckResult(Status.OK, "");
+        });
+
+        assertSame(caller, worker.get());
+    }
+
+    @Test
+    public void should_parse_timeout_in_seconds() {
+        Properties args = JmxHealthCheck.parseArguments(new String[] { "-t", "1.5" });
+
+        assertEquals(1500, Deadline.timeoutMillis(args));
+    }
+
+    private Target target() throws Exception {
+        Properties props = new Properties();
+        props.put(JmxHealthCheck.PROP_SERVICE_URL, fixture.getServiceUrl().toString());
+        return Target.fromProperties(props);
+    }
+}
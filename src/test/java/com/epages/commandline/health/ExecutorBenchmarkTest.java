@@ -0,0 +1,84 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+/**
+ * Compares a fixed platform pool with virtual threads for many slow,
+ * blocking checks. Run with {@code ./gradlew test -Pbenchmark}.
+ */
+public class ExecutorBenchmarkTest {
+
+    private static final int TARGETS = 1000;
+    private static final long DELAY_MILLIS = 200;
+    private static final int POOL_SIZE = 64;
+
+    private JmxServerFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        fixture = new JmxServerFixture();
+        fixture.getEndpoint().setDelayMillis(DELAY_MILLIS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (fixture != null) {
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void compare_fixed_pool_with_virtual_threads() throws Exception {
+        List<Target> targets = new ArrayList<>();
+        Properties props = new Properties();
+        props.put(JmxHealthCheck.PROP_SERVICE_URL, fixture.getServiceUrl().toString());
+        for (int i = 0; i < TARGETS; i++) {
+            targets.add(Target.fromProperties(props));
+        }
+
+        run("warmup", CheckExecutors.fixed(POOL_SIZE), targets);
+        run("fixed(" + POOL_SIZE + ")", CheckExecutors.fixed(POOL_SIZE), targets);
+        run(CheckExecutors.isVirtualAvailable() ? "virtual" : "virtual (fallback)", CheckExecutors.virtual(),
+                targets);
+    }
+
+    private void run(String name, ExecutorService executor, List<Target> targets) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        try {
+            int exitCode = new MultiTargetCheck(new JmxHealthCheck(), executor).run(targets, new PrintStream(NULL));
+            assertEquals(Status.OK.getExitCode(), exitCode);
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("%-20s %5d targets %6d ms %6d KiB heap delta, %d threads peak%n", name, targets.size(),
+                elapsedMillis, (heapAfter - heapBefore) / 1024,
+                ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    }
+
+    private static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+    };
+}
@@ -0,0 +1,87 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class FanOutCheckTest {
+
+    private static final String PATTERN = "org.springframework.boot:type=Endpoint,*";
+
+    private JmxServerFixture fixture;
+    private JMXConnector connector;
+    private MBeanServerConnection connection;
+    private FanOutCheck check = new FanOutCheck(new JmxHealthCheck(), ForkJoinPool.commonPool());
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+        fixture.getServer().registerMBean(new HealthEndpoint("UP"),
+                new ObjectName("org.springframework.boot:type=Endpoint,name=a"));
+        fixture.getServer().registerMBean(new HealthEndpoint("DOWN"),
+                new ObjectName("org.springframework.boot:type=Endpoint,name=b"));
+        connector = JMXConnectorFactory.connect(fixture.getServiceUrl());
+        connection = connector.getMBeanServerConnection();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connector.close();
+        fixture.close();
+    }
+
+    @Test
+    public void should_aggregate_results_of_all_matches() throws Exception {
+        CheckResult result = check.check(connection, PATTERN, "getData", FanOutCheck.ALL);
+
+        assertEquals(Status.CRITICAL, result.getStatus());
+        assertTrue(result.getOutput(), result.getOutput().startsWith("2/3 OK, 3 required; "));
+        assertTrue(result.getOutput(),
+                result.getOutput().contains("org.springframework.boot:type=Endpoint,name=b: CRITICAL status=DOWN"));
+        assertEquals(Status.OK, check.check(connection, PATTERN, "getData", FanOutCheck.ANY).getStatus());
+        assertEquals(Status.OK, check.check(connection, PATTERN, "getData", FanOutCheck.QUORUM).getStatus());
+        assertEquals(Status.CRITICAL, check.check(connection, PATTERN, "getData", "quorum:3").getStatus());
+    }
+
+    @Test
+    public void should_not_deadlock_on_the_pool_running_the_check() throws Exception {
+        ExecutorService executor = CheckExecutors.fixed(1);
+        try {
+            FanOutCheck pooled = new FanOutCheck(new JmxHealthCheck(), executor);
+            CheckResult result = executor.submit(() -> pooled.check(connection, PATTERN, "getData", FanOutCheck.ANY))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertEquals(Status.OK, result.getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_compute_required_matches() {
+        assertEquals(5, FanOutCheck.required(FanOutCheck.ALL, 5));
+        assertEquals(1, FanOutCheck.required(FanOutCheck.ANY, 5));
+        assertEquals(3, FanOutCheck.required(FanOutCheck.QUORUM, 5));
+        assertEquals(3, FanOutCheck.required(FanOutCheck.QUORUM, 4));
+        assertEquals(2, FanOutCheck.required("quorum:2", 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_unknown_aggregation() {
+        FanOutCheck.required("most", 5);
+    }
+}
@@ -0,0 +1,104 @@
+package com.epages.commandline.health;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeChangeNotification;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ReflectionException;
+
+/**
+ * Stand-in for the Spring Boot health endpoint MBean, which exposes
+ * {@code getData} as an operation rather than an attribute. Changes of the
+ * data are announced with an {@link AttributeChangeNotification}.
+ */
+public class HealthEndpoint extends NotificationBroadcasterSupport implements DynamicMBean {
+
+    private volatile Map<String, Object> data;
+    private volatile int invocations;
+    private volatile long delayMillis;
+    private long sequenceNumber;
+
+    public HealthEndpoint(String status) {
+        setStatus(status);
+    }
+
+    public void setStatus(String status) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("status", status);
+        setData(data);
+    }
+
+    public synchronized void setData(Map<String, Object> data) {
+        Map<String, Object> oldData = this.data;
+        this.data = data;
+        sendNotification(new AttributeChangeNotification(this, ++sequenceNumber, System.currentTimeMillis(),
+                "Health data changed", "Data", Map.class.getName(), oldData, data));
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public int getInvocations() {
+        return invocations;
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("getData".equals(actionName)) {
+            invocations++;
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return data;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if ("Status".equals(attribute)) {
+            return data.get("status");
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return new MBeanInfo(getClass().getName(), "Health endpoint",
+                new MBeanAttributeInfo[] {
+                        new MBeanAttributeInfo("Status", String.class.getName(), "Status", true, false, false) },
+                null,
+                new MBeanOperationInfo[] { new MBeanOperationInfo("getData", "Health data", new MBeanParameterInfo[0],
+                        Map.class.getName(), MBeanOperationInfo.INFO) },
+                null);
+    }
+}
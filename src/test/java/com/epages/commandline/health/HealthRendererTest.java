@@ -0,0 +1,75 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+import org.junit.Test;
+
+public class HealthRendererTest {
+
+    @Test
+    public void should_render_nested_maps_like_to_string() {
+        Map<String, Object> disk = new LinkedHashMap<>();
+        disk.put("status", "UP");
+        disk.put("total", 190163431424L);
+        disk.put("free", 16598224896L);
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", "UP");
+        health.put("diskSpace", disk);
+        health.put("hosts", Arrays.asList("a", "b"));
+        health.put("ratio", 0.5d);
+
+        assertEquals("status=UP, diskSpace=" + disk + ", hosts=[a, b], ratio=0.5", HealthRenderer.render(health));
+    }
+
+    @Test
+    public void should_flatten_nested_maps_to_key_paths() {
+        Map<String, Object> disk = new LinkedHashMap<>();
+        disk.put("status", "UP");
+        disk.put("free", 16598224896L);
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", "UP");
+        health.put("diskSpace", disk);
+        health.put("hosts", Arrays.asList("a", "b"));
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("status", "UP");
+        expected.put("diskSpace.status", "UP");
+        expected.put("diskSpace.free", 16598224896L);
+        expected.put("hosts", "[a, b]");
+        assertEquals(expected, HealthRenderer.flatten(health));
+        assertEquals(singleton("", "OK"), HealthRenderer.flatten("OK"));
+    }
+
+    @Test
+    public void should_render_top_level_list_without_brackets() {
+        assertEquals("1, {a=b}, null", HealthRenderer.render(Arrays.asList(1, singleton("a", "b"), null)));
+    }
+
+    @Test
+    public void should_render_composite_data() throws Exception {
+        CompositeType type = new CompositeType("MemoryUsage", "Memory usage", new String[] { "used", "max" },
+                new String[] { "used", "max" }, new OpenType<?>[] { SimpleType.LONG, SimpleType.LONG });
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("used", 10L);
+        values.put("max", 20L);
+        CompositeDataSupport usage = new CompositeDataSupport(type, values);
+
+        assertEquals("max=20, used=10", HealthRenderer.render(usage));
+        assertEquals("heap={max=20, used=10}", HealthRenderer.render(singleton("heap", usage)));
+    }
+
+    private static Map<String, Object> singleton(String key, Object value) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(key, value);
+        return map;
+    }
+}
@@ -0,0 +1,46 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class HealthSubscriptionsTest {
+
+    private final JmxHealthCheck check = new JmxHealthCheck();
+    private JmxServerFixture fixture;
+    private JmxConnectionPool pool;
+    private HealthSubscriptions subscriptions;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+        pool = new JmxConnectionPool(check, ForkJoinPool.commonPool());
+        subscriptions = new HealthSubscriptions(check, pool, new ObjectNameCache(check));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+        fixture.close();
+    }
+
+    @Test
+    public void should_end_subscription_when_its_connector_closes() throws Exception {
+        Target target = Target.fromProperties(
+                JmxHealthCheck.parseArguments(new String[] { "-U", fixture.getServiceUrl().toString() }));
+        assertEquals(Status.OK, subscriptions.check(target, 60000, Deadline.none()).getStatus());
+        assertEquals(1, subscriptions.size());
+
+        pool.borrow(target.getConnectionKey()).close();
+
+        assertEquals(0, subscriptions.size());
+        assertEquals(Status.OK, subscriptions.check(target, 60000, Deadline.none()).getStatus());
+        assertEquals(2, fixture.getEndpoint().getInvocations());
+    }
+}
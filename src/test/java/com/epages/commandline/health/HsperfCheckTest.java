@@ -0,0 +1,92 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class HsperfCheckTest {
+
+    private final String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = PerfData.find(pid);
+        // the test JVM may run with -XX:-UsePerfData.
+        assumeTrue(file != null);
+    }
+
+    @Test
+    public void should_read_counters_of_own_jvm() throws Exception {
+        PerfData data = PerfData.map(file);
+
+        assertNotNull(data.getString("sun.rt.javaCommand"));
+        assertTrue(data.getLong("sun.os.hrt.frequency") > 0);
+        assertTrue(data.offset("sun.gc.collector.0.time") > 0);
+        assertEquals(-1, data.offset("no.such.counter"));
+    }
+
+    @Test
+    public void should_check_thresholds() throws Exception {
+        Properties args = new Properties();
+        args.put(JmxHealthCheck.PROP_PID, pid);
+        args.put(JmxHealthCheck.PROP_MAX_HEAP, "100");
+        args.put(JmxHealthCheck.PROP_MAX_GC_TIME, "100");
+        args.put(JmxHealthCheck.PROP_SAMPLE_INTERVAL, "10");
+        HsperfCheck check = new HsperfCheck();
+
+        assertEquals(Status.OK, check.check(args).getStatus());
+
+        args.put(JmxHealthCheck.PROP_MAX_HEAP, "0");
+        CheckResult result = check.check(args);
+        assertEquals(Status.CRITICAL, result.getStatus());
+        assertTrue(result.getOutput().endsWith("exceeded=heapUsedPercent"));
+    }
+
+    @Test
+    public void should_report_file_left_behind_by_killed_jvm() throws Exception {
+        File stale = new File(file.getParentFile(), String.valueOf(Integer.MAX_VALUE));
+        Files.copy(file.toPath(), stale.toPath());
+        try {
+            Properties args = new Properties();
+            args.put(JmxHealthCheck.PROP_PID, stale.getName());
+
+            assertTrue(PerfData.isRunning(pid));
+            assertFalse(PerfData.isRunning(stale.getName()));
+            assertEquals(Status.CRITICAL, new HsperfCheck().check(args).getStatus());
+        } finally {
+            stale.delete();
+        }
+    }
+
+    @Test
+    public void should_sample_only_on_first_check() throws Exception {
+        Properties args = new Properties();
+        args.put(JmxHealthCheck.PROP_PID, pid);
+        args.put(JmxHealthCheck.PROP_MAX_GC_TIME, "100");
+        args.put(JmxHealthCheck.PROP_SAMPLE_INTERVAL, "300");
+        HsperfCheck check = new HsperfCheck();
+
+        long start = System.nanoTime();
+        assertEquals(Status.OK, check.check(args).getStatus());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+
+        start = System.nanoTime();
+        CheckResult result = check.check(args);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(300));
+        assertTrue(result.getOutput(), result.getOutput().contains("gcTimePercent="));
+    }
+}
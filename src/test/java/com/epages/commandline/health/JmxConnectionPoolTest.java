@@ -0,0 +1,123 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.remote.JMXConnector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+
+public class JmxConnectionPoolTest {
+
+    private final ExecutorService executor = CheckExecutors.fixed(2);
+    private JmxServerFixture fixture;
+    private ConnectionKey key;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+        key = new ConnectionKey(fixture.getServiceUrl(), null, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        fixture.close();
+    }
+
+    @Test
+    public void should_reuse_validated_connector() throws Exception {
+        try (JmxConnectionPool pool = new JmxConnectionPool(new JmxHealthCheck(), executor, 10, 60000)) {
+            JMXConnector connector = pool.borrow(key);
+            Thread.sleep(20);
+
+            assertSame(connector, pool.borrow(key));
+            assertEquals(1, pool.size());
+        }
+    }
+
+    @Test
+    public void should_close_idle_connectors() throws Exception {
+        try (JmxConnectionPool pool = new JmxConnectionPool(new JmxHealthCheck(), executor, 10000, 50)) {
+            pool.borrow(key);
+            Thread.sleep(100);
+
+            pool.sweep();
+
+            assertEquals(0, pool.size());
+        }
+    }
+
+    @Test
+    public void should_evict_connector_failing_validation() throws Exception {
+        try (JmxConnectionPool pool = new JmxConnectionPool(new JmxHealthCheck(), executor, 10, 60000)) {
+            pool.borrow(key);
+            fixture.close();
+            Thread.sleep(20);
+
+            pool.sweep();
+
+            // unless a background sweep is still validating it.
+            assertTrue(awaitSize(pool, 0, JmxConnectionPool.VALIDATION_TIMEOUT_MILLIS));
+        }
+    }
+
+    @Test
+    public void should_evict_other_connectors_while_a_target_stalls() throws Exception {
+        try (JmxServerFixture stalled = new JmxServerFixture();
+                JmxConnectionPool pool = new JmxConnectionPool(new JmxHealthCheck(), executor, 10, 60000)) {
+            pool.borrow(new ConnectionKey(stalled.getServiceUrl(), null, null));
+            pool.borrow(key);
+            stalled.setMBeanCountDelayMillis(5000);
+            fixture.close();
+
+            assertTrue(awaitSize(pool, 1, 500));
+            assertTrue(awaitSize(pool, 0, JmxConnectionPool.VALIDATION_TIMEOUT_MILLIS + 1000));
+        }
+    }
+
+    @Test
+    public void should_evict_closed_connector_immediately() throws Exception {
+        try (JmxConnectionPool pool = new JmxConnectionPool(new JmxHealthCheck(), executor)) {
+            JMXConnector connector = pool.borrow(key);
+
+            connector.close();
+
+            assertEquals(0, pool.size());
+            assertNotSame(connector, pool.borrow(key));
+        }
+    }
+
+    private static boolean awaitSize(JmxConnectionPool pool, int size, long timeoutMillis)
+            throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (pool.size() > size && System.nanoTime() - end < 0) {
+            Thread.sleep(10);
+        }
+        return pool.size() == size;
+    }
+
+    @Test
+    public void should_connect_with_check_period_of_target() throws Exception {
+        Properties args = JmxHealthCheck.parseArguments(new String[] { "-U",
+                fixture.getServiceUrl().toString(), "--username", "monitor", "--password", "secret",
+                "--check-period", "0" });
+        ConnectionKey checkless = Target.fromProperties(args).getConnectionKey();
+
+        try (JmxConnectionPool pool = new JmxConnectionPool(new JmxHealthCheck(), executor)) {
+            assertEquals(0, checkless.getCheckPeriodMillis());
+            assertNotSame(pool.borrow(key), pool.borrow(checkless));
+            assertEquals(2, pool.size());
+        }
+    }
+}
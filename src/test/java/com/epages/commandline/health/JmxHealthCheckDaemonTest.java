@@ -0,0 +1,123 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class JmxHealthCheckDaemonTest {
+
+    private JmxServerFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Test
+    public void should_report_status_of_repeated_checks() {
+        JmxHealthCheckDaemon daemon = new JmxHealthCheckDaemon(new JmxHealthCheck(), new Properties(),
+                ForkJoinPool.commonPool());
+        String[] args = { "-U", fixture.getServiceUrl().toString() };
+
+        assertEquals(Status.OK, daemon.check(args).getStatus());
+        fixture.getEndpoint().setStatus("DOWN");
+        assertEquals(Status.CRITICAL, daemon.check(args).getStatus());
+        assertEquals(2, fixture.getEndpoint().getInvocations());
+    }
+
+    @Test
+    public void should_coalesce_concurrent_identical_checks() throws Exception {
+        JmxHealthCheckDaemon daemon = new JmxHealthCheckDaemon(new JmxHealthCheck(), new Properties(),
+                ForkJoinPool.commonPool());
+        String[] args = { "-U", fixture.getServiceUrl().toString() };
+        assertEquals(Status.OK, daemon.check(args).getStatus());
+        fixture.getEndpoint().setDelayMillis(500);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<CheckResult> first = executor.submit(() -> daemon.check(args));
+            Thread.sleep(100);
+            Future<CheckResult> second = executor.submit(() -> daemon.check(args));
+            Future<CheckResult> third = executor.submit(() -> daemon.check(args));
+
+            assertEquals(Status.OK, first.get().getStatus());
+            assertEquals(Status.OK, second.get().getStatus());
+            assertEquals(Status.OK, third.get().getStatus());
+            assertEquals(2, fixture.getEndpoint().getInvocations());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_append_perfdata_to_cached_result_only_if_requested() {
+        JmxHealthCheckDaemon daemon = new JmxHealthCheckDaemon(new JmxHealthCheck(), new Properties(),
+                ForkJoinPool.commonPool());
+        String url = fixture.getServiceUrl().toString();
+
+        CheckResult withPerfdata = daemon.check(new String[] { "-U", url, "--cache-ttl", "60", "--perfdata" });
+        CheckResult cached = daemon.check(new String[] { "-U", url, "--cache-ttl", "60" });
+        CheckResult cachedWithPerfdata = daemon.check(new String[] { "-U", url, "--cache-ttl", "60", "--perfdata" });
+
+        assertTrue(withPerfdata.getOutput(), withPerfdata.getOutput().contains(" | 'lookup'="));
+        assertFalse(cached.getOutput(), cached.getOutput().contains(" | "));
+        assertTrue(cachedWithPerfdata.getOutput(), cachedWithPerfdata.getOutput().contains(" | 'lookup'="));
+        assertEquals(1, fixture.getEndpoint().getInvocations());
+    }
+
+    @Test
+    public void should_answer_subscribed_target_from_notifications() throws Exception {
+        JmxHealthCheckDaemon daemon = new JmxHealthCheckDaemon(new JmxHealthCheck(), new Properties(),
+                ForkJoinPool.commonPool());
+        String[] args = { "-U", fixture.getServiceUrl().toString(), "--subscribe" };
+
+        assertEquals(Status.OK, daemon.check(args).getStatus());
+        assertEquals(Status.OK, daemon.check(args).getStatus());
+        fixture.getEndpoint().setStatus("DOWN");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (daemon.check(args).getStatus() == Status.OK && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(Status.CRITICAL, daemon.check(args).getStatus());
+        assertEquals(1, fixture.getEndpoint().getInvocations());
+    }
+
+    @Test
+    public void should_append_perfdata_to_subscribed_result() {
+        JmxHealthCheckDaemon daemon = new JmxHealthCheckDaemon(new JmxHealthCheck(), new Properties(),
+                ForkJoinPool.commonPool());
+        String[] args = { "-U", fixture.getServiceUrl().toString(), "--subscribe", "--perfdata" };
+
+        CheckResult invoked = daemon.check(args);
+        CheckResult subscribed = daemon.check(args);
+
+        assertTrue(invoked.getOutput(), invoked.getOutput().contains(" | 'lookup'="));
+        assertTrue(subscribed.getOutput(), subscribed.getOutput().contains(" | 'lookup'="));
+        assertEquals(1, fixture.getEndpoint().getInvocations());
+    }
+
+    @Test
+    public void should_tokenize_quoted_arguments() {
+        assertArrayEquals(new String[] { "-O", "a:type=b c", "-o", "getData" },
+                JmxHealthCheckDaemon.tokenize("  -O \"a:type=b c\"  -o getData "));
+    }
+}
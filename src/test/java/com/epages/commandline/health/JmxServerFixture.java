@@ -0,0 +1,79 @@
+package com.epages.commandline.health;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+import javax.management.remote.MBeanServerForwarder;
+
+/**
+ * In-process MBean server with an RMI connector server and a health endpoint
+ * registered under the Spring Boot default object name. Counting the MBeans
+ * can be delayed to simulate a stalled target.
+ */
+public class JmxServerFixture implements AutoCloseable {
+
+    public static final String OBJECT_NAME = JmxHealthCheck.DEFAULT_OBJECT_NAME;
+
+    private final MBeanServer server = MBeanServerFactory.newMBeanServer();
+    private final HealthEndpoint endpoint = new HealthEndpoint("UP");
+    private final JMXConnectorServer connectorServer;
+    private volatile long mbeanCountDelayMillis;
+
+    public JmxServerFixture() throws Exception {
+        server.registerMBean(endpoint, new ObjectName(OBJECT_NAME));
+        connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(new JMXServiceURL("service:jmx:rmi://"), null,
+                server);
+        connectorServer.setMBeanServerForwarder(delayingMBeanCount());
+        connectorServer.start();
+    }
+
+    public MBeanServer getServer() {
+        return server;
+    }
+
+    public HealthEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public JMXServiceURL getServiceUrl() {
+        return connectorServer.getAddress();
+    }
+
+    public void setMBeanCountDelayMillis(long mbeanCountDelayMillis) {
+        this.mbeanCountDelayMillis = mbeanCountDelayMillis;
+    }
+
+    private MBeanServerForwarder delayingMBeanCount() {
+        MBeanServer[] target = new MBeanServer[1];
+        return (MBeanServerForwarder) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { MBeanServerForwarder.class }, (proxy, method, args) -> {
+                    if ("getMBeanServer".equals(method.getName())) {
+                        return target[0];
+                    }
+                    if ("setMBeanServer".equals(method.getName())) {
+                        target[0] = (MBeanServer) args[0];
+                        return null;
+                    }
+                    if ("getMBeanCount".equals(method.getName()) && mbeanCountDelayMillis > 0) {
+                        Thread.sleep(mbeanCountDelayMillis);
+                    }
+                    try {
+                        return method.invoke(target[0], args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        connectorServer.stop();
+    }
+}
@@ -0,0 +1,86 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsExporterTest {
+
+    private JmxServerFixture fixture;
+    private ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        fixture.close();
+    }
+
+    @Test
+    public void should_export_target_and_component_status() throws Exception {
+        Map<String, Object> diskSpace = new LinkedHashMap<>();
+        diskSpace.put("status", "UP");
+        diskSpace.put("free", 16598224896L);
+        Map<String, Object> rabbit = new LinkedHashMap<>();
+        rabbit.put("status", "DOWN");
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("status", "DOWN");
+        data.put("diskSpace", diskSpace);
+        data.put("rabbit", rabbit);
+        fixture.getEndpoint().setData(data);
+        Properties args = new Properties();
+        args.setProperty(JmxHealthCheck.PROP_SERVICE_URL, fixture.getServiceUrl().toString());
+        MetricsExporter exporter = new MetricsExporter(new JmxHealthCheck(),
+                Collections.singletonList(Target.fromProperties(args)), executor, 5000);
+
+        exporter.refresh();
+
+        String metrics = new String(exporter.getSnapshot(), StandardCharsets.UTF_8);
+        String target = "target=\"" + fixture.getServiceUrl() + "\",object_name=\"" + JmxServerFixture.OBJECT_NAME
+                + "\",operation=\"" + JmxHealthCheck.DEFAULT_OPERATION + "\"";
+        assertTrue(metrics, metrics.contains("jmx_health_check_success{" + target + "} 1\n"));
+        assertTrue(metrics, metrics.contains("jmx_health_status{" + target + "} 0\n"));
+        assertTrue(metrics, metrics.contains(
+                "jmx_health_component_status{" + target + ",component=\"diskSpace\",status=\"UP\"} 1\n"));
+        assertTrue(metrics, metrics.contains(
+                "jmx_health_component_status{" + target + ",component=\"rabbit\",status=\"DOWN\"} 0\n"));
+        assertTrue(metrics, metrics.contains("# TYPE jmx_health_check_duration_seconds gauge\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_targets_with_same_labels() throws Exception {
+        Properties args = new Properties();
+        args.setProperty(JmxHealthCheck.PROP_SERVICE_URL, fixture.getServiceUrl().toString());
+        Properties withCache = new Properties();
+        withCache.putAll(args);
+        withCache.setProperty(JmxHealthCheck.PROP_STATUS_ATTRIBUTE, "Status");
+
+        new MetricsExporter(new JmxHealthCheck(), Arrays.asList(Target.fromProperties(args),
+                Target.fromProperties(withCache)), executor, 5000);
+    }
+
+    @Test
+    public void should_escape_label_values() {
+        StringBuilder out = new StringBuilder();
+
+        MetricsExporter.escape("a\"b\\c\nd", out);
+
+        assertEquals("a\\\"b\\\\c\\nd", out.toString());
+    }
+}
@@ -0,0 +1,90 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class MultiTargetCheckTest {
+
+    private JmxServerFixture up;
+    private JmxServerFixture down;
+    private ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void setUp() throws Exception {
+        up = new JmxServerFixture();
+        down = new JmxServerFixture();
+        down.getEndpoint().setStatus("DOWN");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        up.close();
+        down.close();
+    }
+
+    @Test
+    public void should_collect_repeated_service_urls() throws Exception {
+        Properties args = JmxHealthCheck.parseArguments(new String[] { "-U", up.getServiceUrl().toString(), "-U",
+                down.getServiceUrl().toString(), "-o", "getData" });
+
+        List<Target> targets = MultiTargetCheck.targets(args);
+
+        assertEquals(2, targets.size());
+        assertEquals(up.getServiceUrl(), targets.get(0).getServiceUrl());
+        assertEquals(down.getServiceUrl(), targets.get(1).getServiceUrl());
+        assertEquals("getData", targets.get(1).getOperation());
+    }
+
+    @Test
+    public void should_not_apply_repeated_service_urls_to_target_lines() throws Exception {
+        File file = File.createTempFile("targets", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("-o getData"), StandardCharsets.UTF_8);
+        Properties args = JmxHealthCheck.parseArguments(new String[] { "-U", up.getServiceUrl().toString(), "-U",
+                down.getServiceUrl().toString(), "--targets", file.getPath() });
+
+        List<Target> targets = MultiTargetCheck.targets(args);
+
+        assertEquals(3, targets.size());
+        assertEquals(JmxHealthCheck.DEFAULT_SERVICE_URL, targets.get(2).getServiceUrl().toString());
+        assertEquals("getData", targets.get(2).getOperation());
+    }
+
+    @Test
+    public void should_report_each_target_and_worst_status() throws Exception {
+        List<Target> targets = Arrays.asList(Target.fromProperties(properties(up)),
+                Target.fromProperties(properties(down)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        int exitCode = new MultiTargetCheck(new JmxHealthCheck(), executor).run(targets, new PrintStream(bytes, true));
+
+        assertEquals(Status.CRITICAL.getExitCode(), exitCode);
+        String[] lines = bytes.toString().split("\\r?\\n");
+        assertTrue(lines[0].startsWith("OK " + up.getServiceUrl()));
+        assertTrue(lines[1].startsWith("CRITICAL " + down.getServiceUrl()));
+    }
+
+    private static Properties properties(JmxServerFixture fixture) {
+        Properties props = new Properties();
+        props.put(JmxHealthCheck.PROP_SERVICE_URL, fixture.getServiceUrl().toString());
+        return props;
+    }
+}
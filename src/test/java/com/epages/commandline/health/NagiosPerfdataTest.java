@@ -0,0 +1,58 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class NagiosPerfdataTest {
+
+    @Test
+    public void should_append_timings_and_numeric_values() {
+        Map<String, Object> disk = new LinkedHashMap<>();
+        disk.put("status", "UP");
+        disk.put("total", 190163431424L);
+        disk.put("free", 16598224896L);
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", "UP");
+        health.put("diskSpace", disk);
+        health.put("load", 0.25d);
+        health.put("ratio", Double.NaN);
+        PhaseTimings timings = new PhaseTimings();
+        timings.finish();
+
+        CheckResult result = NagiosPerfdata.append(new CheckResult(Status.OK, "status=UP", health), timings);
+
+        assertEquals(Status.OK, result.getStatus());
+        assertTrue(result.getOutput(), result.getOutput().matches("status=UP \\| 'lookup'=0\\.000000s;;;0 "
+                + "'connect'=\\d+\\.\\d{6}s;;;0 'resolve'=0\\.000000s;;;0 'invoke'=0\\.000000s;;;0 "
+                + "'render'=0\\.000000s;;;0 'total'=\\d+\\.\\d{6}s;;;0 "
+                + "'diskSpace.total'=190163431424 'diskSpace.free'=16598224896 'load'=0.25"));
+    }
+
+    @Test
+    public void should_quote_labels() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("it's=x|y", 1);
+        PhaseTimings timings = new PhaseTimings();
+        timings.finish();
+
+        assertTrue(NagiosPerfdata.format(timings, values).endsWith(" 'it''s_x_y'=1"));
+    }
+
+    @Test
+    public void should_replace_pipes_in_output() {
+        PhaseTimings timings = new PhaseTimings();
+        timings.finish();
+
+        CheckResult result = NagiosPerfdata.append(new CheckResult(Status.CRITICAL, "a|b | c"), timings);
+
+        assertTrue(result.getOutput(), result.getOutput().startsWith("a_b _ c | 'lookup'="));
+        assertEquals(1, result.getOutput().split("\\|", -1).length - 1);
+    }
+}
@@ -0,0 +1,112 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+
+public class ObjectNameCacheTest {
+
+    private static final String PATTERN = "org.springframework.boot:type=Endpoint,*";
+
+    private JmxServerFixture fixture;
+    private JMXConnector connector;
+    private MBeanServerConnection connection;
+    private ConnectionKey key;
+    private ObjectNameCache cache = new ObjectNameCache(new JmxHealthCheck());
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+        connector = JMXConnectorFactory.connect(fixture.getServiceUrl());
+        connection = connector.getMBeanServerConnection();
+        key = new ConnectionKey(fixture.getServiceUrl(), null, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connector.close();
+        fixture.close();
+    }
+
+    @Test
+    public void should_resolve_pattern_once() throws Exception {
+        ObjectName resolved = cache.resolve(key, connection, PATTERN);
+
+        assertEquals(new ObjectName(JmxServerFixture.OBJECT_NAME), resolved);
+        assertEquals(1, cache.size());
+        assertEquals(resolved, cache.resolve(key, connection, PATTERN));
+    }
+
+    @Test
+    public void should_return_plain_name_without_caching() throws Exception {
+        ObjectName resolved = cache.resolve(key, connection, JmxServerFixture.OBJECT_NAME);
+
+        assertEquals(new ObjectName(JmxServerFixture.OBJECT_NAME), resolved);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void should_invalidate_on_unregistration() throws Exception {
+        cache.resolve(key, connection, PATTERN);
+
+        fixture.getServer().unregisterMBean(new ObjectName(JmxServerFixture.OBJECT_NAME));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void should_keep_names_of_other_credentials() throws Exception {
+        try (JMXConnector other = JMXConnectorFactory.connect(fixture.getServiceUrl())) {
+            List<String> calls = new CopyOnWriteArrayList<>();
+            cache.resolve(key, recording(connection, calls), PATTERN);
+            cache.resolve(new ConnectionKey(fixture.getServiceUrl(), "monitorRole", null),
+                    other.getMBeanServerConnection(), PATTERN);
+
+            assertEquals(2, cache.size());
+            assertFalse(calls.contains("removeNotificationListener"));
+        }
+    }
+
+    @Test
+    public void should_stop_listening_on_replaced_connection() throws Exception {
+        List<String> calls = new CopyOnWriteArrayList<>();
+        cache.resolve(key, recording(connection, calls), PATTERN);
+        try (JMXConnector replacement = JMXConnectorFactory.connect(fixture.getServiceUrl())) {
+            cache.resolve(key, replacement.getMBeanServerConnection(), PATTERN);
+        }
+
+        assertTrue(calls.contains("removeNotificationListener"));
+    }
+
+    private static MBeanServerConnection recording(MBeanServerConnection connection, List<String> calls) {
+        return (MBeanServerConnection) Proxy.newProxyInstance(ObjectNameCacheTest.class.getClassLoader(),
+                new Class<?>[] { MBeanServerConnection.class }, (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
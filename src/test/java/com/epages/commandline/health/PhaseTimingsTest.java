@@ -0,0 +1,47 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PhaseTimingsTest {
+
+    @Test
+    public void should_attribute_time_to_entered_phases() throws Exception {
+        PhaseTimings timings = new PhaseTimings();
+        Thread.sleep(5);
+        timings.enter(Deadline.PHASE_INVOKE);
+        Thread.sleep(5);
+        timings.enter(Deadline.PHASE_RENDER);
+        timings.finish();
+
+        assertTrue(timings.getNanos(Deadline.PHASE_CONNECT) >= 5000000);
+        assertEquals(0, timings.getNanos(Deadline.PHASE_LOOKUP));
+        assertEquals(0, timings.getNanos(Deadline.PHASE_RESOLVE));
+        assertTrue(timings.getNanos(Deadline.PHASE_INVOKE) >= 5000000);
+        assertEquals(timings.getTotalNanos(), timings.getNanos(Deadline.PHASE_CONNECT)
+                + timings.getNanos(Deadline.PHASE_INVOKE) + timings.getNanos(Deadline.PHASE_RENDER));
+    }
+
+    @Test
+    public void should_format_timings() {
+        PhaseTimings timings = new PhaseTimings();
+        timings.finish();
+
+        String text = timings.format(PhaseTimings.TEXT);
+        assertTrue(text, text.matches("lookup=0\\.000 ms, connect=\\d+\\.\\d{3} ms, resolve=0\\.000 ms, invoke=0\\.000 ms, "
+                + "render=0\\.000 ms, total=\\d+\\.\\d{3} ms"));
+        String json = timings.format(PhaseTimings.JSON);
+        assertTrue(json, json.matches("\\{\"lookupNanos\":0,\"connectNanos\":\\d+,\"resolveNanos\":0,\"invokeNanos\":0,"
+                + "\"renderNanos\":0,\"totalNanos\":\\d+\\}"));
+        String perfdata = timings.format(PhaseTimings.PERFDATA);
+        assertTrue(perfdata, perfdata.matches("'lookup'=0\\.000000s;;;0 'connect'=\\d+\\.\\d{6}s;;;0 'resolve'=0\\.000000s;;;0 "
+                + "'invoke'=0\\.000000s;;;0 'render'=0\\.000000s;;;0 'total'=\\d+\\.\\d{6}s;;;0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_unknown_format() {
+        new PhaseTimings().format("xml");
+    }
+}
@@ -0,0 +1,75 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+
+/**
+ * Thread count and CPU time of many idle pooled connections, with and
+ * without the connector's dead-connection check. The test server has no
+ * authenticator, so every username gets a connection of its own. As the
+ * server runs in the same JVM, its connection threads, one per connection,
+ * are part of the thread count. Run with {@code ./gradlew test -Pbenchmark}.
+ */
+public class PoolScalingBenchmarkTest {
+
+    private static final int CONNECTIONS = 1000;
+    private static final long IDLE_MILLIS = 10000;
+
+    private JmxServerFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        fixture = new JmxServerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (fixture != null) {
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void hold_idle_connections() throws Exception {
+        run("check period 5 s", 5000);
+        run("check period 60 s", 60000);
+        run("no check", 0);
+    }
+
+    private void run(String name, long checkPeriodMillis) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+        try (JmxConnectionPool pool = new JmxConnectionPool(new JmxHealthCheck(), ForkJoinPool.commonPool(),
+                IDLE_MILLIS * 2, IDLE_MILLIS * 10)) {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                pool.borrow(new ConnectionKey(fixture.getServiceUrl(), "user" + i, "secret", checkPeriodMillis));
+            }
+            assertEquals(CONNECTIONS, pool.size());
+            long cpuBefore = processCpuNanos();
+            Thread.sleep(IDLE_MILLIS);
+            long cpuMillis = (processCpuNanos() - cpuBefore) / 1_000_000;
+            System.out.printf("%-20s %5d connections %5d threads added %6d ms CPU in %d s idle%n", name,
+                    CONNECTIONS, threads.getThreadCount() - threadsBefore, cpuMillis, IDLE_MILLIS / 1000);
+        }
+    }
+
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,85 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.remote.JMXServiceURL;
+
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class ResultCacheTest {
+
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private final AtomicInteger checks = new AtomicInteger();
+    private long now;
+    private final ResultCache cache = new ResultCache(refreshes::add, () -> now);
+    private final Callable<CheckResult> check = () -> new CheckResult(Status.OK, "check " + checks.incrementAndGet());
+
+    @Test
+    public void should_serve_fresh_result_within_ttl() throws Exception {
+        Target target = target();
+
+        assertEquals("check 1", cache.get(target, 1000, 0, check).getOutput());
+        advance(999);
+        assertEquals("check 1", cache.get(target, 1000, 0, check).getOutput());
+        advance(1);
+        assertEquals("check 2", cache.get(target, 1000, 0, check).getOutput());
+    }
+
+    @Test
+    public void should_serve_stale_result_while_refreshing() throws Exception {
+        Target target = target();
+        cache.get(target, 1000, 5000, check);
+        advance(2000);
+
+        assertEquals("check 1", cache.get(target, 1000, 5000, check).getOutput());
+        assertEquals("check 1", cache.get(target, 1000, 5000, check).getOutput());
+        assertEquals(1, refreshes.size());
+
+        refreshes.get(0).run();
+        assertEquals("check 2", cache.get(target, 1000, 5000, check).getOutput());
+    }
+
+    @Test
+    public void should_check_synchronously_beyond_max_stale() throws Exception {
+        Target target = target();
+        cache.get(target, 1000, 5000, check);
+        advance(6000);
+
+        assertEquals("check 2", cache.get(target, 1000, 5000, check).getOutput());
+        assertEquals(0, refreshes.size());
+    }
+
+    @Test
+    public void should_drop_results_beyond_max_stale() throws Exception {
+        cache.get(target(), 1000, 5000, check);
+        advance(5999);
+        cache.get(target("java.lang:type=Runtime"), 1000, 5000, check);
+        assertEquals(2, cache.size());
+
+        advance(1);
+        cache.get(target("java.lang:type=Runtime"), 1000, 5000, check);
+        assertEquals(1, cache.size());
+    }
+
+    private void advance(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static Target target() throws Exception {
+        return target(JmxHealthCheck.DEFAULT_OBJECT_NAME);
+    }
+
+    private static Target target(String objectName) throws Exception {
+        return new Target(new ConnectionKey(new JMXServiceURL("service:jmx:rmi://localhost"), null, null),
+                objectName, JmxHealthCheck.DEFAULT_OPERATION, null, null, null, null);
+    }
+}
@@ -0,0 +1,120 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxConnectionPool.ConnectionKey;
+
+public class RmiStubCacheTest {
+
+    private JmxServerFixture fixture;
+    private Registry registry;
+    private JMXServiceURL serviceUrl;
+    private JMXConnectorServer connectorServer;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        registry = LocateRegistry.createRegistry(port);
+        serviceUrl = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + port + "/jmxrmi");
+        connectorServer = startConnectorServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connectorServer.stop();
+        UnicastRemoteObject.unexportObject(registry, true);
+        fixture.close();
+    }
+
+    @Test
+    public void should_reconnect_without_registry_lookup() throws Exception {
+        RmiStubCache stubs = new RmiStubCache(new JmxHealthCheck());
+        ConnectionKey key = new ConnectionKey(serviceUrl, null, null);
+        stubs.connect(key, Deadline.none()).close();
+
+        registry.unbind("jmxrmi");
+
+        try (JMXConnector connector = stubs.connect(key, Deadline.none())) {
+            assertEquals(fixture.getServer().getMBeanCount(), connector.getMBeanServerConnection().getMBeanCount());
+        }
+        assertEquals(1, stubs.size());
+    }
+
+    @Test
+    public void should_look_up_stub_again_after_restart() throws Exception {
+        RmiStubCache stubs = new RmiStubCache(new JmxHealthCheck());
+        ConnectionKey key = new ConnectionKey(serviceUrl, null, null);
+        stubs.connect(key, Deadline.none()).close();
+
+        connectorServer.stop();
+        connectorServer = startConnectorServer();
+
+        try (JMXConnector connector = stubs.connect(key, Deadline.none())) {
+            assertEquals(fixture.getServer().getMBeanCount(), connector.getMBeanServerConnection().getMBeanCount());
+        }
+    }
+
+    @Test
+    public void should_not_look_up_stub_again_when_out_of_time() throws Exception {
+        RmiStubCache stubs = new RmiStubCache(new JmxHealthCheck());
+        ConnectionKey key = new ConnectionKey(serviceUrl, null, null);
+        stubs.connect(key, Deadline.none()).close();
+
+        connectorServer.stop();
+        connectorServer = startConnectorServer();
+        Deadline deadline = Deadline.after(1);
+        Thread.sleep(10);
+
+        try {
+            stubs.connect(key, deadline).close();
+            fail("connected after the deadline");
+        } catch (IOException e) {
+            assertEquals(Deadline.PHASE_CONNECT, deadline.getPhase());
+            assertEquals(0, deadline.getTimings().getNanos(Deadline.PHASE_LOOKUP));
+        }
+        assertEquals(1, stubs.size());
+    }
+
+    @Test
+    public void should_time_registry_lookup_as_its_own_phase() throws Exception {
+        RmiStubCache stubs = new RmiStubCache(new JmxHealthCheck());
+        ConnectionKey key = new ConnectionKey(serviceUrl, null, null);
+        Deadline lookedUp = Deadline.none();
+        stubs.connect(key, lookedUp).close();
+        Deadline cached = Deadline.none();
+        stubs.connect(key, cached).close();
+
+        assertTrue(lookedUp.getTimings().getNanos(Deadline.PHASE_LOOKUP) > 0);
+        assertTrue(lookedUp.getTimings().getNanos(Deadline.PHASE_CONNECT) > 0);
+        assertEquals(Deadline.PHASE_CONNECT, lookedUp.getPhase());
+        assertEquals(0, cached.getTimings().getNanos(Deadline.PHASE_LOOKUP));
+    }
+
+    private JMXConnectorServer startConnectorServer() throws Exception {
+        JMXConnectorServer server = JMXConnectorServerFactory.newJMXConnectorServer(serviceUrl, null,
+                fixture.getServer());
+        server.start();
+        return server;
+    }
+}
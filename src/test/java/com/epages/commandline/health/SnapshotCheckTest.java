@@ -0,0 +1,102 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class SnapshotCheckTest {
+
+    private JmxServerFixture fixture;
+    private final Snapshot snapshot = new Snapshot();
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+        fixture.getServer().registerMBean(new StandardMBean(snapshot, SnapshotMBean.class),
+                new ObjectName(SnapshotCheck.OBJECT_NAME));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Test
+    public void should_report_snapshot_status_without_invoking_operation() throws Exception {
+        CheckResult result = new JmxHealthCheck().check(target("--snapshot"), Deadline.none(),
+                ForkJoinPool.commonPool());
+
+        assertEquals(Status.OK, result.getStatus());
+        assertEquals("status=UP", result.getOutput());
+        assertEquals(0, fixture.getEndpoint().getInvocations());
+    }
+
+    @Test
+    public void should_report_critical_for_outdated_snapshot() throws Exception {
+        snapshot.ageMillis = 120000;
+
+        CheckResult result = new JmxHealthCheck().check(target("--snapshot", "--max-age", "60"), Deadline.none(),
+                ForkJoinPool.commonPool());
+
+        assertEquals(Status.CRITICAL, result.getStatus());
+        assertEquals("Health snapshot is 120000 ms old: status=UP", result.getOutput());
+    }
+
+    @Test
+    public void should_report_snapshot_status_code() throws Exception {
+        snapshot.statusCode = 1;
+        snapshot.details = "status=DOWN";
+
+        CheckResult result = new JmxHealthCheck().check(target("--snapshot"), Deadline.none(),
+                ForkJoinPool.commonPool());
+
+        assertEquals(Status.CRITICAL, result.getStatus());
+        assertEquals("status=DOWN", result.getOutput());
+    }
+
+    private Target target(String... args) throws Exception {
+        Properties props = JmxHealthCheck.parseArguments(args);
+        props.put(JmxHealthCheck.PROP_SERVICE_URL, fixture.getServiceUrl().toString());
+        return Target.fromProperties(props);
+    }
+
+    public interface SnapshotMBean {
+        byte getStatusCode();
+
+        long getAgeMillis();
+
+        String getDetails();
+    }
+
+    private static class Snapshot implements SnapshotMBean {
+
+        private volatile byte statusCode;
+        private volatile long ageMillis = 100;
+        private volatile String details = "status=UP";
+
+        @Override
+        public byte getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public long getAgeMillis() {
+            return ageMillis;
+        }
+
+        @Override
+        public String getDetails() {
+            return details;
+        }
+    }
+}
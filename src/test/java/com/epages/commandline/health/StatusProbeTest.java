@@ -0,0 +1,69 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class StatusProbeTest {
+
+    private JmxServerFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Test
+    public void should_skip_operation_when_status_is_up() throws Exception {
+        CheckResult result = new JmxHealthCheck().check(target("--status-attribute", "Status"), Deadline.none(),
+                ForkJoinPool.commonPool());
+
+        assertEquals(Status.OK, result.getStatus());
+        assertEquals("status=UP", result.getOutput());
+        assertEquals(0, fixture.getEndpoint().getInvocations());
+    }
+
+    @Test
+    public void should_invoke_operation_when_status_is_not_up() throws Exception {
+        fixture.getEndpoint().setStatus("DOWN");
+
+        CheckResult result = new JmxHealthCheck().check(target("--status-attribute", "Status"), Deadline.none(),
+                ForkJoinPool.commonPool());
+
+        assertEquals(Status.CRITICAL, result.getStatus());
+        assertEquals(1, fixture.getEndpoint().getInvocations());
+    }
+
+    @Test
+    public void should_probe_with_operation_returning_status_map() throws Exception {
+        CheckResult result = new JmxHealthCheck().check(target("--status-operation", "getData"), Deadline.none(),
+                ForkJoinPool.commonPool());
+
+        assertEquals(Status.OK, result.getStatus());
+        assertEquals(1, fixture.getEndpoint().getInvocations());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_attribute_and_operation() {
+        StatusProbe.fromProperties(JmxHealthCheck.parseArguments(
+                new String[] { "--status-attribute", "Status", "--status-operation", "getStatus" }));
+    }
+
+    private Target target(String option, String value) throws Exception {
+        Properties props = JmxHealthCheck.parseArguments(new String[] { option, value });
+        props.put(JmxHealthCheck.PROP_SERVICE_URL, fixture.getServiceUrl().toString());
+        return Target.fromProperties(props);
+    }
+}
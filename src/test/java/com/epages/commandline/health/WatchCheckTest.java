@@ -0,0 +1,63 @@
+package com.epages.commandline.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epages.commandline.health.JmxHealthCheck.Status;
+
+public class WatchCheckTest {
+
+    private JmxServerFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new JmxServerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Test
+    public void should_print_only_changes() {
+        Map<String, Object> previous = new LinkedHashMap<>();
+        previous.put("status", "UP");
+        previous.put("diskSpace.free", 20L);
+        previous.put("rabbit.status", "UP");
+        Map<String, Object> current = new LinkedHashMap<>();
+        current.put("status", "DOWN");
+        current.put("diskSpace.free", 20L);
+        current.put("rabbit.error", "Connection refused");
+
+        assertEquals("status=DOWN (was UP), rabbit.error=Connection refused, rabbit.status (removed)",
+                WatchCheck.diff(previous, current));
+        assertEquals("", WatchCheck.diff(current, current));
+    }
+
+    @Test
+    public void should_print_initial_state_once_over_one_connection() throws Exception {
+        Properties args = new Properties();
+        args.setProperty(JmxHealthCheck.PROP_SERVICE_URL, fixture.getServiceUrl().toString());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        int exitCode = new WatchCheck(new JmxHealthCheck()).run(Target.fromProperties(args), 10,
+                new PrintStream(bytes, true), 3);
+
+        String[] lines = bytes.toString().split("\n");
+        assertEquals(Status.OK.getExitCode(), exitCode);
+        assertEquals(1, lines.length);
+        assertTrue(lines[0], lines[0].endsWith(" ms OK status=UP"));
+        assertEquals(3, fixture.getEndpoint().getInvocations());
+    }
+}